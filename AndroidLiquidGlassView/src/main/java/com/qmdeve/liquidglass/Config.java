@@ -23,6 +23,43 @@ package com.qmdeve.liquidglass;
 import androidx.annotation.Nullable;
 
 public class Config {
+    /**
+     * Pick the backdrop capture scale from the blur radius
+     */
+    public static final int CAPTURE_SCALE_AUTO = 0;
+
+    /**
+     * Number of texture taps used for dispersion in the refraction band
+     */
+    public static final int DISPERSION_QUALITY_AUTO = 0,
+            DISPERSION_QUALITY_HIGH = 1,
+            DISPERSION_QUALITY_MEDIUM = 2,
+            DISPERSION_QUALITY_LOW = 3;
+
+    /**
+     * Dirty bits, set by the mutators below and reported by {@link #consumeDirty()}
+     */
+    public static final int DIRTY_SIZE = 1,
+            DIRTY_CORNER_RADIUS = 1 << 1,
+            DIRTY_ECCENTRIC_FACTOR = 1 << 2,
+            DIRTY_REFRACTION_HEIGHT = 1 << 3,
+            DIRTY_REFRACTION_OFFSET = 1 << 4,
+            DIRTY_DEPTH_EFFECT = 1 << 5,
+            DIRTY_DISPERSION = 1 << 6,
+            DIRTY_CONTRAST = 1 << 7,
+            DIRTY_WHITE_POINT = 1 << 8,
+            DIRTY_CHROMA_MULTIPLIER = 1 << 9,
+            DIRTY_TINT = 1 << 10,
+            DIRTY_BLUR_RADIUS = 1 << 11,
+            DIRTY_CAPTURE_SCALE = 1 << 12,
+            DIRTY_DISPERSION_QUALITY = 1 << 13,
+            DIRTY_BACKDROP_REFRESH = 1 << 14,
+            DIRTY_ALL = (1 << 15) - 1;
+
+    /**
+     * Fields can be read directly. Write them through the setters, or call
+     * {@link #markDirty(int)} after writing them, so the glass notices the change.
+     */
     public float DISPERSION, DEPTH_EFFECT = 0.3f;
     public int WIDTH, HEIGHT;
     public volatile float CORNER_RADIUS_PX;
@@ -33,15 +70,159 @@ public class Config {
     public volatile float WHITE_POINT;
     public volatile float CHROMA_MULTIPLIER;
     public volatile float BLUR_RADIUS;
+    /**
+     * Backdrop is captured and blurred at 1 / CAPTURE_SCALE resolution (1, 2 or 4),
+     * or {@link #CAPTURE_SCALE_AUTO}
+     */
+    public volatile int CAPTURE_SCALE = CAPTURE_SCALE_AUTO;
+    /**
+     * 7, 3 or 1 dispersion taps, or {@link #DISPERSION_QUALITY_AUTO} to pick the taps per glass
+     * from its largest dispersion offset
+     */
+    public volatile int DISPERSION_QUALITY = DISPERSION_QUALITY_AUTO;
+    /**
+     * Re-record a changing backdrop at most once every N frames, the glass itself is still
+     * drawn every frame from the last recording
+     */
+    public volatile int BACKDROP_REFRESH_INTERVAL = 1;
+    /**
+     * Re-record a changing backdrop at most this many times per second, 0 for no limit
+     */
+    public volatile float BACKDROP_REFRESH_RATE = 0f;
     public float TINT_ALPHA, TINT_COLOR_RED, TINT_COLOR_GREEN, TINT_COLOR_BLUE;
 
+    private volatile int version;
+    // Guarded by this, fields may be changed from any thread
+    private int dirty = DIRTY_ALL;
+
+    /**
+     * Incremented on every change, so an unchanged version means nothing needs to be compared
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    public synchronized void markDirty(int mask) {
+        dirty |= mask;
+        version++;
+    }
+
+    /**
+     * Return the fields changed since the last call and clear them
+     */
+    public synchronized int consumeDirty() {
+        int d = dirty;
+        dirty = 0;
+        return d;
+    }
+
+    public void setSize(int width, int height) {
+        if (WIDTH == width && HEIGHT == height) return;
+        WIDTH = width;
+        HEIGHT = height;
+        markDirty(DIRTY_SIZE);
+    }
+
+    public void setCornerRadius(float v) {
+        if (CORNER_RADIUS_PX == v) return;
+        CORNER_RADIUS_PX = v;
+        markDirty(DIRTY_CORNER_RADIUS);
+    }
+
+    public void setEccentricFactor(float v) {
+        if (ECCENTRIC_FACTOR == v) return;
+        ECCENTRIC_FACTOR = v;
+        markDirty(DIRTY_ECCENTRIC_FACTOR);
+    }
+
+    public void setRefractionHeight(float v) {
+        if (REFRACTION_HEIGHT == v) return;
+        REFRACTION_HEIGHT = v;
+        markDirty(DIRTY_REFRACTION_HEIGHT);
+    }
+
+    public void setRefractionOffset(float v) {
+        if (REFRACTION_OFFSET == v) return;
+        REFRACTION_OFFSET = v;
+        markDirty(DIRTY_REFRACTION_OFFSET);
+    }
+
+    public void setDepthEffect(float v) {
+        if (DEPTH_EFFECT == v) return;
+        DEPTH_EFFECT = v;
+        markDirty(DIRTY_DEPTH_EFFECT);
+    }
+
+    public void setDispersion(float v) {
+        if (DISPERSION == v) return;
+        DISPERSION = v;
+        markDirty(DIRTY_DISPERSION);
+    }
+
+    public void setContrast(float v) {
+        if (CONTRAST == v) return;
+        CONTRAST = v;
+        markDirty(DIRTY_CONTRAST);
+    }
+
+    public void setWhitePoint(float v) {
+        if (WHITE_POINT == v) return;
+        WHITE_POINT = v;
+        markDirty(DIRTY_WHITE_POINT);
+    }
+
+    public void setChromaMultiplier(float v) {
+        if (CHROMA_MULTIPLIER == v) return;
+        CHROMA_MULTIPLIER = v;
+        markDirty(DIRTY_CHROMA_MULTIPLIER);
+    }
+
+    public void setTint(float red, float green, float blue, float alpha) {
+        if (TINT_COLOR_RED == red && TINT_COLOR_GREEN == green && TINT_COLOR_BLUE == blue && TINT_ALPHA == alpha) return;
+        TINT_COLOR_RED = red;
+        TINT_COLOR_GREEN = green;
+        TINT_COLOR_BLUE = blue;
+        TINT_ALPHA = alpha;
+        markDirty(DIRTY_TINT);
+    }
+
+    public void setBlurRadius(float v) {
+        if (BLUR_RADIUS == v) return;
+        BLUR_RADIUS = v;
+        markDirty(DIRTY_BLUR_RADIUS);
+    }
+
+    public void setCaptureScale(int v) {
+        if (CAPTURE_SCALE == v) return;
+        CAPTURE_SCALE = v;
+        markDirty(DIRTY_CAPTURE_SCALE);
+    }
+
+    public void setDispersionQuality(int v) {
+        if (DISPERSION_QUALITY == v) return;
+        DISPERSION_QUALITY = v;
+        markDirty(DIRTY_DISPERSION_QUALITY);
+    }
+
+    public void setBackdropRefreshInterval(int frames) {
+        if (BACKDROP_REFRESH_INTERVAL == frames) return;
+        BACKDROP_REFRESH_INTERVAL = frames;
+        markDirty(DIRTY_BACKDROP_REFRESH);
+    }
+
+    public void setBackdropRefreshRate(float hz) {
+        if (BACKDROP_REFRESH_RATE == hz) return;
+        BACKDROP_REFRESH_RATE = hz;
+        markDirty(DIRTY_BACKDROP_REFRESH);
+    }
+
     public void configure(@Nullable Overrides overrides) {
         if (overrides != null) overrides.apply(this);
     }
 
     public static final class Overrides {
-        Float cornerRadius, refractionHeight, refractionOffset, contrast, whitePoint, chromaMultiplier, blurRadius, tintAlpha, tintColorRed, tintColorGreen, tintColorBlue, dispersion;
-        Integer width, height;
+        Float cornerRadius, refractionHeight, refractionOffset, contrast, whitePoint, chromaMultiplier, blurRadius, tintAlpha, tintColorRed, tintColorGreen, tintColorBlue, dispersion, backdropRefreshRate;
+        Integer width, height, captureScale, dispersionQuality, backdropRefreshInterval;
 
         public Overrides tintAlpha(float v) {
             tintAlpha = v;
@@ -114,6 +295,26 @@ public class Config {
             return this;
         }
 
+        public Overrides captureScale(int v) {
+            captureScale = v;
+            return this;
+        }
+
+        public Overrides dispersionQuality(int v) {
+            dispersionQuality = v;
+            return this;
+        }
+
+        public Overrides backdropRefreshInterval(int frames) {
+            backdropRefreshInterval = frames;
+            return this;
+        }
+
+        public Overrides backdropRefreshRate(float hz) {
+            backdropRefreshRate = hz;
+            return this;
+        }
+
         public Overrides size(int w, int h) {
             width = w;
             height = h;
@@ -121,20 +322,27 @@ public class Config {
         }
 
         void apply(Config c) {
-            if (cornerRadius != null) c.CORNER_RADIUS_PX = cornerRadius;
-            if (refractionHeight != null) c.REFRACTION_HEIGHT = refractionHeight;
-            if (refractionOffset != null) c.REFRACTION_OFFSET = refractionOffset;
-            if (contrast != null) c.CONTRAST = contrast;
-            if (whitePoint != null) c.WHITE_POINT = whitePoint;
-            if (chromaMultiplier != null) c.CHROMA_MULTIPLIER = chromaMultiplier;
-            if (blurRadius != null) c.BLUR_RADIUS = blurRadius;
-            if (width != null) c.WIDTH = width;
-            if (height != null) c.HEIGHT = height;
-            if (tintAlpha != null) c.TINT_ALPHA = tintAlpha;
-            if (tintColorRed != null) c.TINT_COLOR_RED = tintColorRed;
-            if (tintColorGreen != null) c.TINT_COLOR_GREEN = tintColorGreen;
-            if (tintColorBlue != null) c.TINT_COLOR_BLUE = tintColorBlue;
-            if (dispersion != null) c.DISPERSION = dispersion;
+            if (cornerRadius != null) c.setCornerRadius(cornerRadius);
+            if (refractionHeight != null) c.setRefractionHeight(refractionHeight);
+            if (refractionOffset != null) c.setRefractionOffset(refractionOffset);
+            if (contrast != null) c.setContrast(contrast);
+            if (whitePoint != null) c.setWhitePoint(whitePoint);
+            if (chromaMultiplier != null) c.setChromaMultiplier(chromaMultiplier);
+            if (blurRadius != null) c.setBlurRadius(blurRadius);
+            if (width != null || height != null) {
+                c.setSize(width != null ? width : c.WIDTH, height != null ? height : c.HEIGHT);
+            }
+            if (tintAlpha != null || tintColorRed != null || tintColorGreen != null || tintColorBlue != null) {
+                c.setTint(tintColorRed != null ? tintColorRed : c.TINT_COLOR_RED,
+                        tintColorGreen != null ? tintColorGreen : c.TINT_COLOR_GREEN,
+                        tintColorBlue != null ? tintColorBlue : c.TINT_COLOR_BLUE,
+                        tintAlpha != null ? tintAlpha : c.TINT_ALPHA);
+            }
+            if (dispersion != null) c.setDispersion(dispersion);
+            if (captureScale != null) c.setCaptureScale(captureScale);
+            if (dispersionQuality != null) c.setDispersionQuality(dispersionQuality);
+            if (backdropRefreshInterval != null) c.setBackdropRefreshInterval(backdropRefreshInterval);
+            if (backdropRefreshRate != null) c.setBackdropRefreshRate(backdropRefreshRate);
         }
     }
 }
\ No newline at end of file
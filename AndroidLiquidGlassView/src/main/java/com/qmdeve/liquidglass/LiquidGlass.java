@@ -32,18 +32,44 @@ import android.view.ViewTreeObserver;
 import android.widget.FrameLayout;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
 
 import com.qmdeve.liquidglass.impl.Impl;
+import com.qmdeve.liquidglass.impl.LiquidGlassCpuImpl;
+import com.qmdeve.liquidglass.impl.LiquidGlassLiteImpl;
 import com.qmdeve.liquidglass.impl.LiquidGlassimpl;
+import com.qmdeve.liquidglass.impl.Prewarm;
 
 import java.lang.ref.WeakReference;
 
 @SuppressLint("ViewConstructor")
 public class LiquidGlass extends FrameLayout {
+
+    /**
+     * Rendering backends, see {@link #setBackend(int)}
+     */
+    public static final int BACKEND_AUTO = 0,
+            BACKEND_SHADER = 1,
+            BACKEND_LITE = 2,
+            BACKEND_CPU = 3;
+
     private Impl impl;
     private ViewGroup target;
+    private View glassView = this;
     private boolean listenerAdded = false;
     private final Config config;
+    private final RoundRectOutlineProvider outlineProvider;
+    private float outlineRadius = Float.NaN;
+    @Nullable
+    private QualityGovernor governor;
+    private int qualityTier = QualityGovernor.TIER_HIGH;
+    private int motionQualityTier = QualityGovernor.TIER_HIGH;
+    private boolean backdropFrozen = false;
+    private boolean snapshotMode = false;
+    private int backend = BACKEND_AUTO;
+    @Nullable
+    private LiquidGlassMetrics metrics;
 
     private static class PreDrawListener implements ViewTreeObserver.OnPreDrawListener {
         private final WeakReference<LiquidGlass> liquidGlassRef;
@@ -63,15 +89,15 @@ public class LiquidGlass extends FrameLayout {
     }
 
     private static class RoundRectOutlineProvider extends ViewOutlineProvider {
-        private final float cornerRadius;
+        private final Config config;
 
-        public RoundRectOutlineProvider(float cornerRadius) {
-            this.cornerRadius = cornerRadius;
+        public RoundRectOutlineProvider(Config config) {
+            this.config = config;
         }
 
         @Override
         public void getOutline(View v, Outline o) {
-            o.setRoundRect(0, 0, v.getWidth(), v.getHeight(), cornerRadius);
+            o.setRoundRect(0, 0, v.getWidth(), v.getHeight(), config.CORNER_RADIUS_PX);
         }
     }
 
@@ -81,21 +107,220 @@ public class LiquidGlass extends FrameLayout {
         super(c);
         setLayerType(LAYER_TYPE_HARDWARE, null);
         this.config = config;
+        this.outlineProvider = new RoundRectOutlineProvider(config);
         init();
     }
 
+    /**
+     * Load and compile the glass shader in the background, e.g. from {@code Application.onCreate()},
+     * so the first glass on screen does not pay for it on the main thread.
+     * Safe to call more than once.
+     *
+     * @param context Context
+     */
+    public static void prewarm(@NonNull Context context) {
+        prewarm(context, null);
+    }
+
+    /**
+     * Same as {@link #prewarm(Context)}
+     *
+     * @param onComplete called on the main thread once the shader is ready
+     */
+    public static void prewarm(@NonNull Context context, @Nullable Runnable onComplete) {
+        // Null while the application itself is still being created
+        Context app = context.getApplicationContext();
+        Prewarm.start((app != null ? app : context).getResources(), onComplete);
+    }
+
+    /**
+     * Whether {@link #prewarm(Context)} has completed
+     */
+    public static boolean isPrewarmed() {
+        return Prewarm.isDone();
+    }
+
     public void init(ViewGroup target) {
         if (this.target != null) removePreDrawListener();
+        if (impl != null) {
+            impl.dispose();
+            impl = null;
+        }
 
         this.target = target;
 
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
-            impl = new LiquidGlassimpl(this, target, config);
-            addPreDrawListener();
-            requestLayout();
+        setLayerType(LAYER_TYPE_HARDWARE, null);
+        impl = createImpl(target);
+        impl.setQualityTier(qualityTier);
+        impl.setMotionQualityTier(motionQualityTier);
+        impl.setBackdropFrozen(backdropFrozen);
+        impl.setSnapshotMode(snapshotMode);
+        impl.setMetrics(metrics);
+        // Layout does not report an unchanged size again, so a new impl after layout needs it here
+        if (isLaidOut()) impl.onSizeChanged(getWidth(), getHeight());
+        addPreDrawListener();
+        requestLayout();
+        invalidate();
+    }
+
+    // getBackend() only returns what the SDK level supports
+    @SuppressLint("NewApi")
+    private Impl createImpl(ViewGroup target) {
+        switch (getBackend()) {
+            case BACKEND_SHADER:
+                return new LiquidGlassimpl(this, glassView, target, config);
+            case BACKEND_LITE:
+                return new LiquidGlassLiteImpl(this, glassView, target, config);
+            default:
+                return new LiquidGlassCpuImpl(this, glassView, target, config);
+        }
+    }
+
+    /**
+     * View that wraps this glass and draws around it, e.g. a glow. It is left out of the backdrop
+     * as a whole and stands for the glass in visibility checks.
+     *
+     * @param view View, this glass itself by default
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public void setGlassView(@NonNull View view) {
+        if (glassView == view) return;
+        glassView = view;
+        if (target != null) init(target);
+    }
+
+    /**
+     * Choose how the glass is rendered. {@link #BACKEND_SHADER} is the full effect and needs API 33,
+     * {@link #BACKEND_LITE} blurs and tints with platform effects and draws an edge highlight
+     * instead of refracting (API 31), and {@link #BACKEND_CPU} refracts in software at a reduced
+     * rate on any API level. A backend the device cannot run falls back to the next one down.
+     *
+     * @param backend {@link #BACKEND_AUTO} (default) for the best one the device supports
+     */
+    public void setBackend(int backend) {
+        if (this.backend == backend) return;
+        this.backend = backend;
+        if (target != null) init(target);
+    }
+
+    /**
+     * @return the backend in use, never {@link #BACKEND_AUTO}
+     */
+    public int getBackend() {
+        int sdk = Build.VERSION.SDK_INT;
+        int requested = backend == BACKEND_AUTO ? BACKEND_SHADER : backend;
+        if (requested == BACKEND_SHADER && sdk >= Build.VERSION_CODES.TIRAMISU) return BACKEND_SHADER;
+        if (requested <= BACKEND_LITE && sdk >= Build.VERSION_CODES.S) return BACKEND_LITE;
+        return BACKEND_CPU;
+    }
+
+    /**
+     * Let a governor lower the quality of this glass while frames run over budget.
+     * A governor can be shared by several glasses in the same window.
+     *
+     * @param governor QualityGovernor, or null to always render at the configured quality
+     */
+    public void setQualityGovernor(@Nullable QualityGovernor governor) {
+        if (this.governor == governor) return;
+        if (this.governor != null) this.governor.detach(this);
+        this.governor = governor;
+        if (governor != null && isAttachedToWindow()) governor.attach(this);
+    }
+
+    @Nullable
+    public QualityGovernor getQualityGovernor() {
+        return governor;
+    }
+
+    /**
+     * Quality used while the glass moves or content in its window scrolls. Nobody can see the
+     * full-quality dispersion or an exact blur in motion, so those frames are made cheaper.
+     * Full quality comes back on the first idle frame.
+     *
+     * @param tier {@link QualityGovernor#TIER_MEDIUM} to {@link QualityGovernor#TIER_MINIMUM},
+     *             or {@link QualityGovernor#TIER_HIGH} (default) to keep the quality in motion
+     */
+    public void setMotionQualityTier(int tier) {
+        motionQualityTier = Math.max(QualityGovernor.TIER_HIGH, Math.min(QualityGovernor.TIER_MINIMUM, tier));
+        if (impl != null) impl.setMotionQualityTier(motionQualityTier);
+    }
+
+    /**
+     * Stop re-recording the source, e.g. for the duration of an activity or fragment transition.
+     * The glass keeps the backdrop it has until it is unfrozen.
+     *
+     * @param frozen boolean
+     */
+    public void setBackdropFrozen(boolean frozen) {
+        if (backdropFrozen == frozen) return;
+        backdropFrozen = frozen;
+        if (impl != null) impl.setBackdropFrozen(frozen);
+    }
+
+    /**
+     * Capture the backdrop once into a hardware bitmap and reuse it until {@link #invalidateBackdrop()},
+     * for glass over content that only changes when the app says so, e.g. a wallpaper or a loaded map tile.
+     * No per-frame recording happens in this mode, and changes to the source do not show until invalidated.
+     *
+     * @param enabled boolean
+     */
+    public void setSnapshotMode(boolean enabled) {
+        if (snapshotMode == enabled) return;
+        snapshotMode = enabled;
+        if (impl != null) impl.setSnapshotMode(enabled);
+    }
+
+    /**
+     * Capture the backdrop again on the next frame, see {@link #setSnapshotMode(boolean)}
+     */
+    public void invalidateBackdrop() {
+        if (impl != null) impl.refreshBackdrop(0);
+    }
+
+    /**
+     * Re-record the backdrop on the next frame, even when it is frozen or its refresh is capped.
+     * Use it when the app knows the content below changed.
+     */
+    public void refreshBackdrop() {
+        refreshBackdrop(0);
+    }
+
+    /**
+     * Same as {@link #refreshBackdrop()}, then keep re-recording at full rate for a while,
+     * e.g. for the length of a content change animation
+     *
+     * @param durationMs how long the refresh cap and freeze are lifted
+     */
+    public void refreshBackdrop(long durationMs) {
+        if (impl != null) impl.refreshBackdrop(Math.max(0, durationMs));
+    }
+
+    /**
+     * Collect per-frame counters for this glass, see {@link LiquidGlassMetrics}.
+     * Disabled by default, nothing is measured while disabled.
+     *
+     * @param enabled boolean
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        if (enabled == (metrics != null)) return;
+        metrics = enabled ? new LiquidGlassMetrics() : null;
+        if (impl != null) impl.setMetrics(metrics);
+    }
+
+    /**
+     * @return the counters, or null while metrics are disabled
+     */
+    @Nullable
+    public LiquidGlassMetrics getMetrics() {
+        return metrics;
+    }
+
+    void setQualityTier(int tier) {
+        if (qualityTier == tier) return;
+        qualityTier = tier;
+        if (impl != null) {
+            impl.setQualityTier(tier);
             invalidate();
-        } else {
-            removePreDrawListener();
         }
     }
 
@@ -110,17 +335,31 @@ public class LiquidGlass extends FrameLayout {
         if (impl != null) impl.draw(canvas);
     }
 
+    /**
+     * Pick up Config changes on the next frame. Any number of changes made before then
+     * result in a single effect update during the normal draw pass.
+     * Every field is treated as changed, so fields written directly are picked up too.
+     */
     public void updateParameters() {
-        if (impl != null) {
-            impl.onPreDraw();
-            invalidate();
-        }
-        updateOutlineProvider();
+        updateParameters(Config.DIRTY_ALL);
+    }
+
+    /**
+     * Same as {@link #updateParameters()}, for callers that know what they changed
+     *
+     * @param changed Config.DIRTY_* bits of the fields written directly, 0 if every change
+     *                went through the Config setters
+     */
+    public void updateParameters(int changed) {
+        if (changed != 0) config.markDirty(changed);
+        if (impl != null) invalidate();
+        if (outlineRadius != config.CORNER_RADIUS_PX) updateOutlineProvider();
     }
 
     private void updateOutlineProvider() {
-        if (config.CORNER_RADIUS_PX > 0) {
-            setOutlineProvider(new RoundRectOutlineProvider(config.CORNER_RADIUS_PX));
+        outlineRadius = config.CORNER_RADIUS_PX;
+        if (outlineRadius > 0) {
+            if (getOutlineProvider() != outlineProvider) setOutlineProvider(outlineProvider);
             setClipToOutline(true);
             invalidateOutline();
         } else {
@@ -139,11 +378,13 @@ public class LiquidGlass extends FrameLayout {
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
         addPreDrawListener();
+        if (governor != null) governor.attach(this);
     }
 
     @Override
     protected void onDetachedFromWindow() {
         removePreDrawListener();
+        if (governor != null) governor.detach(this);
         if (impl != null) impl.dispose();
         super.onDetachedFromWindow();
     }
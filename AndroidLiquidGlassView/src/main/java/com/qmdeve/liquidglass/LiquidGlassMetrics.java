@@ -0,0 +1,213 @@
+/**
+ * Copyright 2025 QmDeve
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author QmDeve
+ * @github https://github.com/QmDeve
+ * @since 2025-11-01
+ */
+
+
+package com.qmdeve.liquidglass;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+/**
+ * Per-glass performance counters, see {@link LiquidGlass#setMetricsEnabled(boolean)}.
+ * Nothing is measured while metrics are disabled.
+ * <p>
+ * Counters accumulate until {@link #reset()}. A backdrop shared by several glasses reports
+ * its recordings to each of them. Main thread only.
+ */
+public final class LiquidGlassMetrics {
+
+    public interface Listener {
+        /**
+         * Called after every frame the glass took part in
+         */
+        void onFrame(LiquidGlassMetrics metrics);
+    }
+
+    private long frames, skippedFrames;
+    private long recordCount, recordTimeNs;
+    private long backdropRecordCount, backdropRecordTimeNs;
+    private long effectUpdates, effectCacheHits, effectCacheMisses;
+    private long blurCacheHits, blurCacheMisses;
+    private long capturedAreaPx;
+    private long displayListBytes, layerBytes;
+    @Nullable
+    private Listener listener;
+
+    public void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Frames the glass was drawn in
+     */
+    public long getFrameCount() {
+        return frames;
+    }
+
+    /**
+     * Frames where neither the backdrop nor the glass had to be re-recorded
+     */
+    public long getSkippedFrameCount() {
+        return skippedFrames;
+    }
+
+    /**
+     * Times the glass re-recorded its view of the backdrop
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Time spent re-recording the glass, in nanoseconds
+     */
+    public long getRecordTimeNanos() {
+        return recordTimeNs;
+    }
+
+    /**
+     * Times the source was re-recorded into the backdrop
+     */
+    public long getBackdropRecordCount() {
+        return backdropRecordCount;
+    }
+
+    /**
+     * Time spent re-recording the source, in nanoseconds
+     */
+    public long getBackdropRecordTimeNanos() {
+        return backdropRecordTimeNs;
+    }
+
+    /**
+     * Times the effects were updated for a Config, quality or size change
+     */
+    public long getEffectUpdateCount() {
+        return effectUpdates;
+    }
+
+    public long getEffectCacheHitCount() {
+        return effectCacheHits;
+    }
+
+    public long getEffectCacheMissCount() {
+        return effectCacheMisses;
+    }
+
+    public long getBlurCacheHitCount() {
+        return blurCacheHits;
+    }
+
+    public long getBlurCacheMissCount() {
+        return blurCacheMisses;
+    }
+
+    /**
+     * Area of the source captured by the last backdrop recording, in pixels
+     */
+    public long getCapturedAreaPx() {
+        return capturedAreaPx;
+    }
+
+    /**
+     * Approximate memory held by the glass and backdrop display lists, in bytes
+     */
+    public long getDisplayListBytes() {
+        return displayListBytes;
+    }
+
+    /**
+     * Estimated size of the offscreen layers the effects render into, in bytes
+     */
+    public long getLayerBytes() {
+        return layerBytes;
+    }
+
+    public void reset() {
+        frames = skippedFrames = 0;
+        recordCount = recordTimeNs = 0;
+        backdropRecordCount = backdropRecordTimeNs = 0;
+        effectUpdates = effectCacheHits = effectCacheMisses = 0;
+        blurCacheHits = blurCacheMisses = 0;
+        capturedAreaPx = 0;
+        displayListBytes = layerBytes = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "LiquidGlassMetrics{frames=" + frames
+                + ", skipped=" + skippedFrames
+                + ", records=" + recordCount + " (" + recordTimeNs / 1000 + "us)"
+                + ", backdropRecords=" + backdropRecordCount + " (" + backdropRecordTimeNs / 1000 + "us)"
+                + ", effectUpdates=" + effectUpdates
+                + ", effectCache=" + effectCacheHits + "/" + effectCacheMisses
+                + ", blurCache=" + blurCacheHits + "/" + blurCacheMisses
+                + ", capturedArea=" + capturedAreaPx
+                + ", displayLists=" + displayListBytes
+                + ", layers=" + layerBytes + "}";
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public void onRecord(long durationNs) {
+        recordCount++;
+        recordTimeNs += durationNs;
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public void onBackdropRecord(long durationNs, long areaPx) {
+        backdropRecordCount++;
+        backdropRecordTimeNs += durationNs;
+        capturedAreaPx = areaPx;
+    }
+
+    /**
+     * An update on a backend without an effect cache, counted but neither a hit nor a miss
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public void onEffectUpdate() {
+        effectUpdates++;
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public void onEffectUpdate(boolean cacheHit) {
+        effectUpdates++;
+        if (cacheHit) effectCacheHits++;
+        else effectCacheMisses++;
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public void onBlurLookup(boolean cacheHit) {
+        if (cacheHit) blurCacheHits++;
+        else blurCacheMisses++;
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public void onMemory(long displayListBytes, long layerBytes) {
+        this.displayListBytes = displayListBytes;
+        this.layerBytes = layerBytes;
+    }
+
+    @RestrictTo(RestrictTo.Scope.LIBRARY)
+    public void onFrame(boolean skipped) {
+        frames++;
+        if (skipped) skippedFrames++;
+        if (listener != null) listener.onFrame(this);
+    }
+}
@@ -0,0 +1,262 @@
+/**
+ * Copyright 2025 QmDeve
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author QmDeve
+ * @github https://github.com/QmDeve
+ * @since 2025-11-01
+ */
+
+
+package com.qmdeve.liquidglass;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+import android.view.Display;
+import android.view.FrameMetrics;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import android.view.Window;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+
+/**
+ * Opt-in governor that lowers glass quality while frames run over budget and raises it again
+ * after sustained headroom. Frame durations come from {@link Window.OnFrameMetricsAvailableListener}
+ * when the glass lives in an Activity window, otherwise from {@link Choreographer} frame deltas.
+ * <p>
+ * One governor can drive several glasses, see {@link LiquidGlass#setQualityGovernor(QualityGovernor)}.
+ * Main thread only.
+ */
+public final class QualityGovernor {
+
+    /**
+     * Configured quality, nothing is given up
+     */
+    public static final int TIER_HIGH = 0;
+    /**
+     * Three dispersion taps, blur capped
+     */
+    public static final int TIER_MEDIUM = 1;
+    /**
+     * One dispersion tap, half resolution capture, backdrop refreshed every other frame
+     */
+    public static final int TIER_LOW = 2;
+    /**
+     * One dispersion tap, quarter resolution capture, backdrop refreshed every third frame
+     */
+    public static final int TIER_MINIMUM = 3;
+
+    public interface OnTierChangedListener {
+        void onTierChanged(int oldTier, int newTier);
+    }
+
+    // Frames are judged in windows, a single hitch is not enough to change tier
+    private static final int WINDOW_FRAMES = 30;
+    // Step down when this share of a window misses the budget
+    private static final float DEGRADE_JANK_RATIO = 0.25f;
+    // Step up after this many windows in a row without misses and with this much headroom
+    private static final int UPGRADE_WINDOWS = 4;
+    private static final float HEADROOM_LOAD = 0.6f;
+    // No step up for this long after a step down, so the tier does not oscillate
+    private static final long UPGRADE_COOLDOWN_NS = 3_000_000_000L;
+    // Choreographer deltas: a miss is half a frame late, a long gap means the UI was idle
+    private static final float DELTA_JANK_FACTOR = 1.5f;
+    private static final int DELTA_IDLE_FRAMES = 6;
+
+    private final ArrayList<LiquidGlass> glasses = new ArrayList<>();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private int tier = TIER_HIGH;
+    private int minTier = TIER_HIGH, maxTier = TIER_MINIMUM;
+    @Nullable
+    private OnTierChangedListener listener;
+
+    private View monitored;
+    private Window window;
+    private Window.OnFrameMetricsAvailableListener metricsListener;
+    private ViewTreeObserver.OnDrawListener drawListener;
+    private final Choreographer.FrameCallback frameCallback = this::onFrameCallback;
+    private boolean callbackPosted;
+    private long lastFrameTimeNs;
+    private long budgetNs = 16_666_667L;
+
+    private int frames, jankyFrames, headroomWindows;
+    private float loadSum;
+    private boolean measuresWork;
+    private long lastDowngradeNs;
+
+    /**
+     * Current tier, from {@link #TIER_HIGH} to {@link #TIER_MINIMUM}
+     */
+    public int getTier() {
+        return tier;
+    }
+
+    /**
+     * Limit the tiers the governor may pick, e.g. to never go below {@link #TIER_MEDIUM}
+     */
+    public void setTierRange(int min, int max) {
+        minTier = Math.max(TIER_HIGH, Math.min(TIER_MINIMUM, min));
+        maxTier = Math.max(minTier, Math.min(TIER_MINIMUM, max));
+        setTier(tier);
+    }
+
+    public void setOnTierChangedListener(@Nullable OnTierChangedListener listener) {
+        this.listener = listener;
+    }
+
+    void attach(@NonNull LiquidGlass glass) {
+        if (glasses.contains(glass)) return;
+        glasses.add(glass);
+        glass.setQualityTier(tier);
+        if (monitored == null) start(glass);
+    }
+
+    void detach(@NonNull LiquidGlass glass) {
+        if (!glasses.remove(glass)) return;
+        glass.setQualityTier(TIER_HIGH);
+        if (monitored == glass) {
+            stop();
+            if (!glasses.isEmpty()) start(glasses.get(0));
+        }
+    }
+
+    private void start(View view) {
+        monitored = view;
+        Display display = view.getDisplay();
+        float refreshRate = display != null ? display.getRefreshRate() : 60f;
+        budgetNs = (long) (1_000_000_000L / Math.max(refreshRate, 1f));
+        resetWindow();
+
+        Activity activity = findActivity(view.getContext());
+        if (activity != null && activity.getWindow() != null && view.isHardwareAccelerated()) {
+            window = activity.getWindow();
+            metricsListener = (w, metrics, dropCount) -> onFrameMetrics(metrics);
+            window.addOnFrameMetricsAvailableListener(metricsListener, handler);
+            measuresWork = true;
+        } else {
+            // Only count frames that were actually drawn, so an idle UI costs nothing
+            drawListener = () -> {
+                if (!callbackPosted) {
+                    callbackPosted = true;
+                    Choreographer.getInstance().postFrameCallback(frameCallback);
+                }
+            };
+            view.getViewTreeObserver().addOnDrawListener(drawListener);
+            measuresWork = false;
+        }
+    }
+
+    private void stop() {
+        if (window != null) {
+            window.removeOnFrameMetricsAvailableListener(metricsListener);
+            window = null;
+            metricsListener = null;
+        }
+        if (drawListener != null) {
+            ViewTreeObserver observer = monitored.getViewTreeObserver();
+            if (observer.isAlive()) observer.removeOnDrawListener(drawListener);
+            drawListener = null;
+        }
+        if (callbackPosted) {
+            Choreographer.getInstance().removeFrameCallback(frameCallback);
+            callbackPosted = false;
+        }
+        lastFrameTimeNs = 0;
+        monitored = null;
+    }
+
+    private void onFrameMetrics(FrameMetrics metrics) {
+        if (metrics.getMetric(FrameMetrics.FIRST_DRAW_FRAME) == 1) return;
+        long budget = budgetNs;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            long deadline = metrics.getMetric(FrameMetrics.DEADLINE);
+            if (deadline > 0) budget = deadline;
+        }
+        long total = metrics.getMetric(FrameMetrics.TOTAL_DURATION);
+        onFrame(total > budget, (float) total / budget);
+    }
+
+    private void onFrameCallback(long frameTimeNanos) {
+        callbackPosted = false;
+        long last = lastFrameTimeNs;
+        lastFrameTimeNs = frameTimeNanos;
+        if (last == 0) return;
+
+        long delta = frameTimeNanos - last;
+        if (delta > budgetNs * DELTA_IDLE_FRAMES) return;
+        onFrame(delta > budgetNs * DELTA_JANK_FACTOR, (float) delta / budgetNs);
+    }
+
+    private void onFrame(boolean janky, float load) {
+        frames++;
+        if (janky) jankyFrames++;
+        loadSum += load;
+        if (frames < WINDOW_FRAMES) return;
+
+        long now = System.nanoTime();
+        float averageLoad = loadSum / frames;
+        if (jankyFrames >= WINDOW_FRAMES * DEGRADE_JANK_RATIO) {
+            headroomWindows = 0;
+            if (tier < maxTier) {
+                lastDowngradeNs = now;
+                setTier(tier + 1);
+            }
+        } else if (jankyFrames == 0 && (!measuresWork || averageLoad <= HEADROOM_LOAD)) {
+            // Frame deltas cannot tell how much of the frame was spent, no misses is all they show
+            if (++headroomWindows >= UPGRADE_WINDOWS && now - lastDowngradeNs >= UPGRADE_COOLDOWN_NS) {
+                headroomWindows = 0;
+                setTier(tier - 1);
+            }
+        } else {
+            headroomWindows = 0;
+        }
+        resetWindow();
+    }
+
+    private void resetWindow() {
+        frames = 0;
+        jankyFrames = 0;
+        loadSum = 0;
+    }
+
+    private void setTier(int newTier) {
+        newTier = Math.max(minTier, Math.min(maxTier, newTier));
+        if (newTier == tier) return;
+
+        int oldTier = tier;
+        tier = newTier;
+        for (int i = 0, n = glasses.size(); i < n; i++) {
+            glasses.get(i).setQualityTier(newTier);
+        }
+        if (listener != null) listener.onTierChanged(oldTier, newTier);
+    }
+
+    @Nullable
+    private static Activity findActivity(Context context) {
+        while (context instanceof ContextWrapper) {
+            if (context instanceof Activity) return (Activity) context;
+            context = ((ContextWrapper) context).getBaseContext();
+        }
+        return null;
+    }
+}
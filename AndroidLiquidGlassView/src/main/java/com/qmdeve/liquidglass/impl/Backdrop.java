@@ -0,0 +1,440 @@
+/**
+ * Copyright 2025 QmDeve
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author QmDeve
+ * @github https://github.com/QmDeve
+ * @since 2025-11-01
+ */
+
+package com.qmdeve.liquidglass.impl;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Picture;
+import android.graphics.Rect;
+import android.graphics.RenderNode;
+import android.os.Build;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+import android.view.animation.AnimationUtils;
+
+import androidx.annotation.RequiresApi;
+
+import com.qmdeve.liquidglass.util.GlassTrace;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Backdrop capture shared by every glass bound to the same source view.
+ * <p>
+ * The source is drawn into a single {@link RenderNode} once per frame, and each glass
+ * draws that node into its own node with its own {@link android.graphics.RenderEffect}.
+ * Must only be used from the main thread.
+ */
+@RequiresApi(api = Build.VERSION_CODES.Q)
+final class Backdrop implements ViewTreeObserver.OnPreDrawListener {
+
+    private static final HashMap<View, Backdrop> REGISTRY = new HashMap<>();
+    private static final HashMap<View, Backdrop> SNAPSHOTS = new HashMap<>();
+
+    /**
+     * Refresh interval of a client that does not want the source re-recorded at all
+     */
+    static final int REFRESH_NEVER = Integer.MAX_VALUE;
+
+    /**
+     * Glass that samples this backdrop
+     */
+    interface Client {
+        /**
+         * Area of the source this client samples, in source coordinates
+         *
+         * @return false if the client does not need the backdrop this frame
+         */
+        boolean getSampleBounds(Rect outBounds);
+
+        /**
+         * Frames this client can wait between two recordings of a changing source,
+         * or {@link #REFRESH_NEVER}
+         */
+        int getRefreshInterval();
+
+        /**
+         * Shortest time this client wants between two recordings of a changing source, in milliseconds
+         */
+        long getRefreshPeriodMillis();
+
+        /**
+         * Outermost view of the glass, left out of the recording so the glass does not sample itself
+         */
+        View getGlassView();
+
+        /**
+         * Whether this client collects metrics, recordings are only timed for those
+         */
+        boolean isTimingRecords();
+    }
+
+    private final View target;
+    private final RenderNode node;
+    /**
+     * Captured once into a hardware bitmap and kept until {@link #invalidate()}, instead of
+     * following the source every frame
+     */
+    private final boolean snapshot;
+    private Bitmap snapshotBitmap;
+    private final ArrayList<Client> clients = new ArrayList<>();
+    private final Rect required = new Rect();
+    private final Rect recorded = new Rect();
+    private final Rect bounds = new Rect();
+    private final Rect shifted = new Rect();
+    private final ArrayList<View> recordedChildren = new ArrayList<>();
+    private int anchorLeft, anchorTop;
+    private int lastScrollX, lastScrollY, lastShiftX, lastShiftY;
+    /**
+     * The recording was reused while children moved under something the source draws itself
+     */
+    private boolean selfDrawingLags;
+    private final ArrayList<View> hidden = new ArrayList<>();
+    private boolean listenerAdded;
+    private boolean contentInvalid = true;
+    private boolean pendingChange;
+    private int refreshInterval = 1;
+    private int framesSinceRecord;
+    private long refreshPeriodMs;
+    private long lastRecordTimeMs;
+    private int generation;
+    private long lastRecordNs;
+    private final String traceRecord, traceArea;
+
+    private Backdrop(View target, boolean snapshot) {
+        this.target = target;
+        this.snapshot = snapshot;
+        this.node = new RenderNode(snapshot ? "AndroidLiquidGlassView:snapshot" : "AndroidLiquidGlassView:backdrop");
+        // Content is recorded in content coordinates, which leave the frame once the source scrolls
+        this.node.setClipToBounds(false);
+        String traceName = GlassTrace.nameOf(snapshot ? "LiquidGlass:snapshot" : "LiquidGlass:backdrop", target);
+        this.traceRecord = traceName + ".record";
+        this.traceArea = traceName + ".recordedArea";
+    }
+
+    static Backdrop acquire(View target, Client client, boolean snapshot) {
+        HashMap<View, Backdrop> registry = snapshot ? SNAPSHOTS : REGISTRY;
+        Backdrop backdrop = registry.get(target);
+        if (backdrop == null) {
+            backdrop = new Backdrop(target, snapshot);
+            registry.put(target, backdrop);
+        }
+        backdrop.clients.add(client);
+        if (backdrop.clients.size() == 1) backdrop.addPreDrawListener();
+        if (backdrop.isStale()) backdrop.record();
+        return backdrop;
+    }
+
+    void release(Client client) {
+        if (!clients.remove(client) || !clients.isEmpty()) return;
+
+        removePreDrawListener();
+        node.discardDisplayList();
+        snapshotBitmap = null;
+        recordedChildren.clear();
+        (snapshot ? SNAPSHOTS : REGISTRY).remove(target);
+    }
+
+    RenderNode getNode() {
+        return node;
+    }
+
+    /**
+     * Incremented every time the source is re-recorded
+     */
+    int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Duration of the last recording, in nanoseconds
+     */
+    long getLastRecordNanos() {
+        return lastRecordNs;
+    }
+
+    /**
+     * Area of the source covered by the last recording, in pixels
+     */
+    long getRecordedArea() {
+        return (long) recorded.width() * recorded.height();
+    }
+
+    /**
+     * Memory held by the snapshot bitmap, in bytes
+     */
+    long getSnapshotBytes() {
+        return snapshotBitmap != null ? snapshotBitmap.getAllocationByteCount() : 0;
+    }
+
+    /**
+     * Force the next frame to re-record the source
+     */
+    void invalidate() {
+        contentInvalid = true;
+    }
+
+    @Override
+    public boolean onPreDraw() {
+        // Children are recorded as references to their own RenderNodes, so their content
+        // updates show up without re-recording; only the source itself has to be dirty.
+        framesSinceRecord++;
+        if (isStale()) record();
+        return true;
+    }
+
+    private boolean isStale() {
+        if (!computeRequiredBounds()) return false;
+
+        int scrollX = target.getScrollX(), scrollY = target.getScrollY();
+        boolean scrollChanged = scrollX != lastScrollX || scrollY != lastScrollY;
+        lastScrollX = scrollX;
+        lastScrollY = scrollY;
+
+        if (contentInvalid
+                || !node.hasDisplayList()
+                || node.getWidth() != target.getWidth()
+                || node.getHeight() != target.getHeight()) {
+            return true;
+        }
+
+        // Children that moved together since the recording, e.g. a RecyclerView scrolling by
+        // offsetting its items, show up at their new place through their live RenderNodes
+        boolean childrenUnchanged = !snapshot && childrenUnchanged();
+        int shiftX = 0, shiftY = 0;
+        if (childrenUnchanged && !recordedChildren.isEmpty()) {
+            View anchor = recordedChildren.get(0);
+            shiftX = anchor.getLeft() - anchorLeft;
+            shiftY = anchor.getTop() - anchorTop;
+        }
+        shifted.set(required);
+        shifted.offset(-shiftX, -shiftY);
+        boolean scrolled = scrollChanged || shiftX != lastShiftX || shiftY != lastShiftY;
+        lastShiftX = shiftX;
+        lastShiftY = shiftY;
+        // The moved content must have been recorded, and the playback is still clipped to the
+        // recorded area, so the area needed now must lie inside it as well
+        if (!recorded.contains(shifted) || !recorded.contains(required)) return true;
+
+        // Children stopped moving, catch up with what the source draws itself
+        if (selfDrawingLags && !scrolled) return true;
+
+        // A snapshot ignores changes to the source until it is invalidated
+        if (snapshot || (!pendingChange && !target.isDirty())) return false;
+
+        // Scrolling only moved what was already recorded. What the source draws itself, e.g. item
+        // decorations, stays where it was recorded while the children move, so it is caught up
+        // once they stop. Edge effects only animate while nothing moves, so they never match here.
+        if (!pendingChange && scrolled && childrenUnchanged) {
+            if ((shiftX != 0 || shiftY != 0) && !target.willNotDraw()) selfDrawingLags = true;
+            return false;
+        }
+
+        // Frame time is locked to vsync during a frame, so allow for its millisecond rounding
+        long sinceRecordMs = AnimationUtils.currentAnimationTimeMillis() - lastRecordTimeMs;
+        if (framesSinceRecord >= refreshInterval && sinceRecordMs + 1 >= refreshPeriodMs) return true;
+
+        // Throttled: keep the change and make sure a frame comes to pick it up
+        pendingChange = true;
+        if (refreshInterval != REFRESH_NEVER) clients.get(0).getGlassView().postInvalidateOnAnimation();
+        return false;
+    }
+
+    /**
+     * @return whether the source has the same children as when it was recorded, none of them
+     * invalidated since
+     */
+    private boolean childrenUnchanged() {
+        if (!(target instanceof ViewGroup)) return true;
+        ViewGroup group = (ViewGroup) target;
+        int n = group.getChildCount();
+        if (n != recordedChildren.size()) return false;
+        for (int i = 0; i < n; i++) {
+            View child = group.getChildAt(i);
+            if (child != recordedChildren.get(i) || child.isDirty()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Union of the areas sampled by all clients, clamped to the source, in content coordinates
+     * (the source's scroll offset included)
+     *
+     * @return false if nothing needs to be recorded
+     */
+    private boolean computeRequiredBounds() {
+        required.setEmpty();
+        int interval = Integer.MAX_VALUE;
+        long period = Long.MAX_VALUE;
+        for (int i = 0, n = clients.size(); i < n; i++) {
+            Client client = clients.get(i);
+            if (client.getSampleBounds(bounds)) {
+                required.union(bounds);
+                interval = Math.min(interval, client.getRefreshInterval());
+                period = Math.min(period, client.getRefreshPeriodMillis());
+            }
+        }
+        refreshInterval = Math.max(1, interval);
+        refreshPeriodMs = period;
+        if (!required.intersect(0, 0, target.getWidth(), target.getHeight())) return false;
+        required.offset(target.getScrollX(), target.getScrollY());
+        return true;
+    }
+
+    private void record() {
+        int w = target.getWidth(), h = target.getHeight();
+        if (w == 0 || h == 0) return;
+
+        if (node.getWidth() != w || node.getHeight() != h) node.setPosition(0, 0, w, h);
+
+        // Record a bit more than needed so small moves of the glass do not force a re-record.
+        // Along a scrollable axis the margin reaches past the visible frame, so scrolling can
+        // reuse the recording for longer, unless the source has a background, which is only
+        // drawn behind the visible frame.
+        int sx = target.getScrollX(), sy = target.getScrollY();
+        int mx = 0, my = 0;
+        if (target.getBackground() == null) {
+            if (target.canScrollHorizontally(-1) || target.canScrollHorizontally(1)) mx = w / 2;
+            if (target.canScrollVertically(-1) || target.canScrollVertically(1)) my = h / 2;
+        }
+        recorded.set(required);
+        recorded.inset(-Math.max(required.width() / 4, mx), -Math.max(required.height() / 4, my));
+        if (!recorded.intersect(sx - mx, sy - my, sx + w + mx, sy + h + my)) return;
+
+        boolean traced = GlassTrace.begin(traceRecord);
+        boolean timed = isTimed();
+        long start = timed ? System.nanoTime() : 0;
+        try {
+            if (snapshot) {
+                captureSnapshot(w, h);
+            } else {
+                Canvas rec = node.beginRecording(w, h);
+                hideGlassViews();
+                try {
+                    // Children outside the clip are quick-rejected by their parent while recording
+                    rec.clipRect(recorded);
+                    target.draw(rec);
+                } finally {
+                    node.endRecording();
+                    restoreGlassViews();
+                }
+            }
+        } finally {
+            GlassTrace.end(traced);
+        }
+        lastRecordNs = timed ? System.nanoTime() - start : 0;
+        GlassTrace.setCounter(traceArea, getRecordedArea());
+        contentInvalid = false;
+        pendingChange = false;
+        framesSinceRecord = 0;
+        lastRecordTimeMs = AnimationUtils.currentAnimationTimeMillis();
+        rememberChildren();
+        generation++;
+    }
+
+    private boolean isTimed() {
+        for (int i = 0, n = clients.size(); i < n; i++) {
+            if (clients.get(i).isTimingRecords()) return true;
+        }
+        return false;
+    }
+
+    private void rememberChildren() {
+        recordedChildren.clear();
+        lastShiftX = lastShiftY = 0;
+        lastScrollX = target.getScrollX();
+        lastScrollY = target.getScrollY();
+        selfDrawingLags = false;
+        if (!(target instanceof ViewGroup)) return;
+        ViewGroup group = (ViewGroup) target;
+        for (int i = 0, n = group.getChildCount(); i < n; i++) {
+            recordedChildren.add(group.getChildAt(i));
+        }
+        if (!recordedChildren.isEmpty()) {
+            anchorLeft = recordedChildren.get(0).getLeft();
+            anchorTop = recordedChildren.get(0).getTop();
+        }
+    }
+
+    /**
+     * Draw the recorded area of the source into a hardware bitmap. Unlike a live recording,
+     * which references the children's own RenderNodes, nothing in the source shows through
+     * until the next capture.
+     */
+    private void captureSnapshot(int w, int h) {
+        Picture picture = new Picture();
+        Canvas canvas = picture.beginRecording(recorded.width(), recorded.height());
+        hideGlassViews();
+        try {
+            canvas.translate(-recorded.left, -recorded.top);
+            canvas.clipRect(recorded);
+            target.draw(canvas);
+        } finally {
+            picture.endRecording();
+            restoreGlassViews();
+        }
+        snapshotBitmap = Bitmap.createBitmap(picture);
+
+        Canvas rec = node.beginRecording(w, h);
+        rec.drawBitmap(snapshotBitmap, recorded.left, recorded.top, null);
+        node.endRecording();
+    }
+
+    /**
+     * Hide every glass drawn directly by the source for the duration of the recording.
+     * Only the visibility flag is flipped, so this triggers no invalidation or layout.
+     * Glass nested deeper is drawn through its parent's cached display list and cannot be
+     * left out without re-recording that parent.
+     */
+    private void hideGlassViews() {
+        for (int i = 0, n = clients.size(); i < n; i++) {
+            View glass = clients.get(i).getGlassView();
+            if (glass.getParent() == target && glass.getVisibility() == View.VISIBLE) {
+                glass.setTransitionVisibility(View.INVISIBLE);
+                hidden.add(glass);
+            }
+        }
+    }
+
+    private void restoreGlassViews() {
+        for (int i = 0, n = hidden.size(); i < n; i++) {
+            hidden.get(i).setTransitionVisibility(View.VISIBLE);
+        }
+        hidden.clear();
+    }
+
+    private void addPreDrawListener() {
+        if (!listenerAdded) {
+            target.getViewTreeObserver().addOnPreDrawListener(this);
+            listenerAdded = true;
+        }
+    }
+
+    private void removePreDrawListener() {
+        if (listenerAdded) {
+            ViewTreeObserver observer = target.getViewTreeObserver();
+            if (observer.isAlive()) observer.removeOnPreDrawListener(this);
+            listenerAdded = false;
+        }
+    }
+}
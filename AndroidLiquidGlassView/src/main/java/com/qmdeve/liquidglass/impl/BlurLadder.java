@@ -0,0 +1,88 @@
+/**
+ * Copyright 2025 QmDeve
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author QmDeve
+ * @github https://github.com/QmDeve
+ * @since 2025-11-01
+ */
+
+package com.qmdeve.liquidglass.impl;
+
+import android.graphics.RenderEffect;
+import android.graphics.Shader;
+import android.os.Build;
+
+import androidx.annotation.RequiresApi;
+
+/**
+ * Blur sigmas snapped to a fixed ladder, with one blur effect per step shared by every glass.
+ * The effect only changes when the step does. Small sigmas use exact quarter pixel steps and
+ * larger ones a fine geometric ratio, so neighbouring steps are indistinguishable. Main thread only.
+ */
+@RequiresApi(api = Build.VERSION_CODES.S)
+final class BlurLadder {
+
+    static final int NONE = -1;
+
+    // Steps 0..LINEAR_STEPS-1 are LINEAR_SIGMA apart, the rest grow by RATIO up to MAX_SIGMA.
+    private static final float LINEAR_SIGMA = 0.25f;
+    private static final int LINEAR_STEPS = 16;
+    private static final float LINEAR_MAX = LINEAR_SIGMA * LINEAR_STEPS;
+    private static final float RATIO = 1.04f;
+    private static final double LOG_RATIO = Math.log(RATIO);
+    private static final float MAX_SIGMA = 400f;
+    private static final int STEPS = LINEAR_STEPS
+            + (int) Math.ceil(Math.log(MAX_SIGMA / LINEAR_MAX) / LOG_RATIO);
+
+    private static final RenderEffect[] EFFECTS = new RenderEffect[STEPS];
+
+    private BlurLadder() {
+    }
+
+    /**
+     * @return the ladder step for sigma, or {@link #NONE} for no blur
+     */
+    static int step(float sigma) {
+        if (!(sigma > 0f)) return NONE;
+        if (sigma <= LINEAR_MAX) {
+            // Below half a step the blur is invisible, so it is dropped rather than rounded up.
+            return Math.round(sigma / LINEAR_SIGMA) - 1;
+        }
+        double step = LINEAR_STEPS - 1 + Math.rint(Math.log(sigma / LINEAR_MAX) / LOG_RATIO);
+        return (int) Math.min(STEPS - 1, step);
+    }
+
+    static float sigma(int step) {
+        if (step == NONE) return 0f;
+        if (step < LINEAR_STEPS) return LINEAR_SIGMA * (step + 1);
+        return (float) (LINEAR_MAX * Math.pow(RATIO, step - (LINEAR_STEPS - 1)));
+    }
+
+    static RenderEffect effect(int step) {
+        if (step == NONE) return null;
+
+        RenderEffect effect = EFFECTS[step];
+        if (effect == null) {
+            float sigma = sigma(step);
+            effect = RenderEffect.createBlurEffect(sigma, sigma, Shader.TileMode.CLAMP);
+            EFFECTS[step] = effect;
+        }
+        return effect;
+    }
+
+    static boolean isCached(int step) {
+        return step == NONE || EFFECTS[step] != null;
+    }
+}
@@ -0,0 +1,253 @@
+/**
+ * Copyright 2025 QmDeve
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author QmDeve
+ * @github https://github.com/QmDeve
+ * @since 2025-11-01
+ */
+
+
+package com.qmdeve.liquidglass.impl;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Shader;
+import android.os.Build;
+import android.util.Half;
+
+import androidx.annotation.RequiresApi;
+
+import com.qmdeve.liquidglass.Config;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Refraction geometry baked into a half-float bitmap for the shader's baked variant.
+ * Red and green hold the unit displacement (circle map times the normalized gradient, scaled
+ * by the refraction offset in the shader) biased by 0.5, blue flags the flat interior.
+ * <p>
+ * Everything in it depends only on size, corner radius, refraction height and depth effect,
+ * so a glass with a fixed shape bakes once. Maps are shared by glasses of the same shape, and
+ * the cache is dropped when the last glass using one goes away or the app is asked to trim memory.
+ */
+@RequiresApi(api = Build.VERSION_CODES.TIRAMISU)
+final class DisplacementMap {
+
+    /**
+     * Glass pixels per map pixel, the displacement is smooth and read with linear filtering
+     */
+    static final int SCALE = 2;
+    /**
+     * A full-screen map alone is about 5 MB, so the cache is bounded by size rather than count
+     */
+    private static final long MAX_CACHED_BYTES = 8L * 1024 * 1024;
+
+    private static final LinkedHashMap<Key, DisplacementMap> CACHE = new LinkedHashMap<>(8, 0.75f, true);
+    private static long cachedBytes;
+    /**
+     * Glasses holding a map, main thread only
+     */
+    private static int users;
+    private static boolean trimRegistered;
+
+    private static final ComponentCallbacks2 TRIM_CALLBACKS = new ComponentCallbacks2() {
+        @Override
+        public void onTrimMemory(int level) {
+            if (level >= TRIM_MEMORY_RUNNING_LOW) clearCache();
+        }
+
+        @Override
+        public void onLowMemory() {
+            clearCache();
+        }
+
+        @Override
+        public void onConfigurationChanged(Configuration newConfig) {
+        }
+    };
+
+    final Key key;
+    final BitmapShader shader;
+    final int byteCount;
+
+    private DisplacementMap(Key key, Bitmap bitmap) {
+        this.key = key;
+        this.shader = new BitmapShader(bitmap, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP);
+        this.shader.setFilterMode(BitmapShader.FILTER_MODE_LINEAR);
+        this.byteCount = bitmap.getAllocationByteCount();
+    }
+
+    /**
+     * @return the cached map for key, or null if it still has to be baked
+     */
+    static DisplacementMap peek(Key key) {
+        synchronized (CACHE) {
+            return CACHE.get(key);
+        }
+    }
+
+    /**
+     * Bake the map for key, or return the cached one. Safe on any thread.
+     */
+    static DisplacementMap get(Key key) {
+        DisplacementMap map = peek(key);
+        if (map != null) return map;
+        map = new DisplacementMap(key, bake(key));
+        synchronized (CACHE) {
+            DisplacementMap previous = CACHE.put(key, map);
+            if (previous != null) cachedBytes -= previous.byteCount;
+            cachedBytes += map.byteCount;
+            // The new map stays even if it is over budget alone, its glass picks it up from here
+            Iterator<DisplacementMap> eldest = CACHE.values().iterator();
+            while (cachedBytes > MAX_CACHED_BYTES && CACHE.size() > 1) {
+                cachedBytes -= eldest.next().byteCount;
+                eldest.remove();
+            }
+        }
+        return map;
+    }
+
+    /**
+     * A glass started holding a map, pair with {@link #release()}
+     */
+    static void retain(Context context) {
+        if (!trimRegistered) {
+            trimRegistered = true;
+            Context app = context.getApplicationContext();
+            (app != null ? app : context).registerComponentCallbacks(TRIM_CALLBACKS);
+        }
+        users++;
+    }
+
+    /**
+     * The glass no longer holds a map, the cache goes with the last one
+     */
+    static void release() {
+        if (--users != 0) return;
+        clearCache();
+        // Shared programs and cached effects still reference the maps last uploaded to them
+        Bitmap empty = Bitmap.createBitmap(1, 1, Bitmap.Config.RGBA_F16);
+        ShaderCache.releaseDisplacementMaps(new BitmapShader(empty, Shader.TileMode.CLAMP, Shader.TileMode.CLAMP));
+        EffectCache.clear();
+    }
+
+    private static void clearCache() {
+        synchronized (CACHE) {
+            CACHE.clear();
+            cachedBytes = 0;
+        }
+    }
+
+    private static Bitmap bake(Key key) {
+        int w = Math.max(1, (key.width + SCALE - 1) / SCALE);
+        int h = Math.max(1, (key.height + SCALE - 1) / SCALE);
+        float hw = key.width * 0.5f, hh = key.height * 0.5f;
+        float radius = key.cornerRadius, band = key.refractionHeight;
+        float gradRadius = Math.min(Math.max(radius * 1.5f, 30f), Math.min(hw, hh));
+        float[] grad = new float[2];
+        short one = Half.toHalf(1f), half = Half.toHalf(0.5f);
+        ShortBuffer pixels = ByteBuffer.allocateDirect(w * h * 8).order(ByteOrder.nativeOrder()).asShortBuffer();
+
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                // Same math as the shader, at the centre of the glass area each map pixel covers
+                float cx = (x + 0.5f) * SCALE - hw, cy = (y + 0.5f) * SCALE - hh;
+                float sd = RefractionKernel.sdRoundedRect(cx, cy, hw, hh, radius);
+                float dx = 0f, dy = 0f;
+                boolean interior = !(band > 0f) || -sd >= band;
+                if (!interior) {
+                    float d = RefractionKernel.circleMap(1f - -Math.min(sd, 0f) / band);
+                    RefractionKernel.gradSdRoundedRect(cx, cy, hw, hh, gradRadius, grad);
+                    float len = (float) Math.sqrt(cx * cx + cy * cy);
+                    float gx = grad[0], gy = grad[1];
+                    if (len > 0f) {
+                        gx += key.depthEffect * cx / len;
+                        gy += key.depthEffect * cy / len;
+                    }
+                    float glen = (float) Math.sqrt(gx * gx + gy * gy);
+                    if (glen > 0f) {
+                        dx = d * gx / glen;
+                        dy = d * gy / glen;
+                    }
+                }
+                pixels.put(Half.toHalf(dx * 0.5f + 0.5f));
+                pixels.put(Half.toHalf(dy * 0.5f + 0.5f));
+                pixels.put(interior ? one : 0);
+                pixels.put(one);
+            }
+        }
+        pixels.rewind();
+
+        Bitmap bitmap = Bitmap.createBitmap(w, h, Bitmap.Config.RGBA_F16);
+        bitmap.copyPixelsFromBuffer(pixels);
+        // Immutable bitmaps are uploaded once and can be shared between threads
+        bitmap.setImmutable();
+        return bitmap;
+    }
+
+    static float mapScale() {
+        return 1f / SCALE;
+    }
+
+    /**
+     * The geometry a map is baked for
+     */
+    static final class Key {
+        final int width, height;
+        final float cornerRadius, refractionHeight, depthEffect;
+
+        Key(int width, int height, float cornerRadius, float refractionHeight, float depthEffect) {
+            this.width = width;
+            this.height = height;
+            this.cornerRadius = cornerRadius;
+            this.refractionHeight = refractionHeight;
+            this.depthEffect = depthEffect;
+        }
+
+        static Key of(Config config) {
+            return new Key(config.WIDTH, config.HEIGHT, config.CORNER_RADIUS_PX, config.REFRACTION_HEIGHT, config.DEPTH_EFFECT);
+        }
+
+        boolean matches(Config config) {
+            return width == config.WIDTH && height == config.HEIGHT && cornerRadius == config.CORNER_RADIUS_PX
+                    && refractionHeight == config.REFRACTION_HEIGHT && depthEffect == config.DEPTH_EFFECT;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return width == k.width && height == k.height && cornerRadius == k.cornerRadius
+                    && refractionHeight == k.refractionHeight && depthEffect == k.depthEffect;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = width;
+            h = 31 * h + height;
+            h = 31 * h + Float.floatToIntBits(cornerRadius);
+            h = 31 * h + Float.floatToIntBits(refractionHeight);
+            return 31 * h + Float.floatToIntBits(depthEffect);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * Copyright 2025 QmDeve
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author QmDeve
+ * @github https://github.com/QmDeve
+ * @since 2025-11-01
+ */
+
+package com.qmdeve.liquidglass.impl;
+
+import android.graphics.RenderEffect;
+import android.os.Build;
+
+import androidx.annotation.RequiresApi;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Process-wide LRU cache of finished effect chains, keyed by quantized glass parameters.
+ * Presets that are toggled or animated back and forth reuse their effects instead of
+ * allocating new native objects. Main thread only.
+ */
+@RequiresApi(api = Build.VERSION_CODES.S)
+final class EffectCache {
+
+    /**
+     * Quantization steps per unit
+     */
+    static final float PX_STEPS = 2f, FACTOR_STEPS = 256f, COLOR_STEPS = 255f;
+
+    private static final int MAX_ENTRIES = 32;
+
+    private static final LinkedHashMap<Key, Entry> CACHE = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private EffectCache() {
+    }
+
+    /**
+     * Hits and misses are counted per glass by {@link com.qmdeve.liquidglass.LiquidGlassMetrics}
+     */
+    static Entry get(Key key) {
+        return CACHE.get(key);
+    }
+
+    static void put(Key key, Entry entry) {
+        CACHE.put(key.copy(), entry);
+    }
+
+    static void clear() {
+        CACHE.clear();
+    }
+
+    static final class Entry {
+        /**
+         * Effect of the glass node, and of the downsampled content node if there is one
+         */
+        final RenderEffect nodeEffect, contentEffect;
+
+        Entry(RenderEffect nodeEffect, RenderEffect contentEffect) {
+            this.nodeEffect = nodeEffect;
+            this.contentEffect = contentEffect;
+        }
+    }
+
+    /**
+     * Mutable so a single probe key can be refilled every lookup without allocating
+     */
+    static final class Key {
+        private final int[] values;
+        private int size, hash;
+
+        Key(int capacity) {
+            values = new int[capacity];
+        }
+
+        void reset() {
+            size = 0;
+            hash = 1;
+        }
+
+        void put(int value) {
+            values[size++] = value;
+            hash = 31 * hash + value;
+        }
+
+        /**
+         * @return the quantized value, which is what the effect must be built with
+         */
+        float put(float value, float steps) {
+            int q = Math.round(value * steps);
+            put(q);
+            return q / steps;
+        }
+
+        Key copy() {
+            Key key = new Key(size);
+            System.arraycopy(values, 0, key.values, 0, size);
+            key.size = size;
+            key.hash = hash;
+            return key;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            if (size != other.size || hash != other.hash) return false;
+            for (int i = 0; i < size; i++) {
+                if (values[i] != other.values[i]) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(Arrays.copyOf(values, size));
+        }
+    }
+}
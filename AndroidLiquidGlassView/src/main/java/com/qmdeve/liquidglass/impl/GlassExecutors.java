@@ -0,0 +1,93 @@
+/**
+ * Copyright 2025 QmDeve
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author QmDeve
+ * @github https://github.com/QmDeve
+ * @since 2025-11-01
+ */
+
+package com.qmdeve.liquidglass.impl;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threads shared by all glass instances
+ */
+final class GlassExecutors {
+
+    private static volatile ExecutorService background;
+    private static volatile ExecutorService compute;
+    private static volatile Handler main;
+
+    private GlassExecutors() {
+    }
+
+    /**
+     * Single low priority daemon thread for loading and preparing shader resources
+     */
+    static ExecutorService background() {
+        if (background == null) {
+            synchronized (GlassExecutors.class) {
+                if (background == null) {
+                    background = Executors.newSingleThreadExecutor(r -> {
+                        Thread thread = new Thread(r, "LiquidGlass-background");
+                        thread.setDaemon(true);
+                        thread.setPriority(Thread.MIN_PRIORITY);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return background;
+    }
+
+    /**
+     * Bounded daemon pool for the CPU refraction tiles, one thread per spare core and at most four
+     */
+    static ExecutorService compute() {
+        if (compute == null) {
+            synchronized (GlassExecutors.class) {
+                if (compute == null) {
+                    AtomicInteger count = new AtomicInteger();
+                    compute = Executors.newFixedThreadPool(computeThreads(), r -> {
+                        Thread thread = new Thread(r, "LiquidGlass-compute-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        thread.setPriority(Thread.NORM_PRIORITY - 1);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return compute;
+    }
+
+    static int computeThreads() {
+        return Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    static Handler main() {
+        if (main == null) {
+            synchronized (GlassExecutors.class) {
+                if (main == null) main = new Handler(Looper.getMainLooper());
+            }
+        }
+        return main;
+    }
+}
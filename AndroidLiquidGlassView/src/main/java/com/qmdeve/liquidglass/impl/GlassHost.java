@@ -0,0 +1,161 @@
+/**
+ * Copyright 2025 QmDeve
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author QmDeve
+ * @github https://github.com/QmDeve
+ * @since 2025-11-01
+ */
+
+
+package com.qmdeve.liquidglass.impl;
+
+import android.graphics.Rect;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.animation.AnimationUtils;
+
+import com.qmdeve.liquidglass.Config;
+import com.qmdeve.liquidglass.QualityGovernor;
+
+/**
+ * What every backend needs to know about where its glass sits: the views involved, the glass
+ * position in the source, and when the backdrop is refreshed. Main thread only.
+ */
+final class GlassHost {
+
+    /**
+     * The view drawing the glass, and the source it samples
+     */
+    final View host, target;
+    /**
+     * Outermost view of the glass, see {@link Backdrop.Client#getGlassView()}
+     */
+    final View glass;
+    /**
+     * Host position relative to the target, set by {@link #updateOffset()}
+     */
+    int offsetX, offsetY;
+
+    private final int[] tp = new int[2];
+    private final int[] hp = new int[2];
+    private long burstUntilMs;
+    private final Rect visibleRect = new Rect(), siblingRect = new Rect();
+    private boolean visible;
+    private long visibleFrameMs = Long.MIN_VALUE;
+
+    GlassHost(View host, View target, View glass) {
+        this.host = host;
+        this.target = target;
+        this.glass = glass;
+    }
+
+    void updateOffset() {
+        target.getLocationInWindow(tp);
+        host.getLocationInWindow(hp);
+        offsetX = hp[0] - tp[0];
+        offsetY = hp[1] - tp[1];
+    }
+
+    /**
+     * Cheap check that the glass can be seen: shown, not fully transparent, not clipped away by
+     * its parents or scrolled off screen, and not covered by an opaque sibling drawn on top.
+     * The pre-draw pass and the backdrop both ask, so it is only worked out once per frame.
+     */
+    boolean isVisibleOnScreen() {
+        // The animation clock holds the frame time for the whole frame
+        long frameMs = AnimationUtils.currentAnimationTimeMillis();
+        if (frameMs != visibleFrameMs) {
+            visibleFrameMs = frameMs;
+            visible = computeVisibleOnScreen();
+        }
+        return visible;
+    }
+
+    private boolean computeVisibleOnScreen() {
+        if (!glass.isShown()) return false;
+        for (View v = host; v != null; v = v.getParent() instanceof View ? (View) v.getParent() : null) {
+            if (v.getAlpha() <= 0f) return false;
+        }
+        if (!host.getGlobalVisibleRect(visibleRect)) return false;
+        return !isCoveredBySibling();
+    }
+
+    private boolean isCoveredBySibling() {
+        if (!(glass.getParent() instanceof ViewGroup)) return false;
+        ViewGroup parent = (ViewGroup) glass.getParent();
+        if (!isAxisAligned(glass)) return false;
+
+        glass.getHitRect(visibleRect);
+        for (int i = parent.getChildCount() - 1, index = parent.indexOfChild(glass); i > index; i--) {
+            View sibling = parent.getChildAt(i);
+            if (sibling.getVisibility() != View.VISIBLE || sibling.getAlpha() < 1f || !sibling.isOpaque()
+                    || sibling.getZ() < glass.getZ() || !isAxisAligned(sibling)) {
+                continue;
+            }
+            sibling.getHitRect(siblingRect);
+            if (siblingRect.contains(visibleRect)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Without rotation the hit rect is the exact drawn bounds
+     */
+    private static boolean isAxisAligned(View v) {
+        return v.getRotation() == 0f && v.getRotationX() == 0f && v.getRotationY() == 0f;
+    }
+
+    /**
+     * Large blurs throw away the detail anyway, so they are captured and blurred at a lower
+     * resolution and upscaled for the refraction pass.
+     */
+    static int resolveCaptureScale(int setting, float sigma) {
+        if (setting == 1 || setting == 2 || setting == 4) return setting;
+        if (sigma >= 20f) return 4;
+        if (sigma >= 8f) return 2;
+        return 1;
+    }
+
+    /**
+     * Follow the source every frame for durationMs, whatever the refresh settings
+     */
+    void startBurst(long durationMs) {
+        burstUntilMs = AnimationUtils.currentAnimationTimeMillis() + durationMs;
+    }
+
+    boolean isBursting() {
+        return burstUntilMs != 0 && AnimationUtils.currentAnimationTimeMillis() < burstUntilMs;
+    }
+
+    /**
+     * See {@link Backdrop.Client#getRefreshInterval()}
+     *
+     * @param tier {@link QualityGovernor} tier the glass renders at
+     */
+    int getRefreshInterval(Config config, boolean frozen, int tier) {
+        if (isBursting()) return 1;
+        if (frozen) return Backdrop.REFRESH_NEVER;
+        return Math.max(config.BACKDROP_REFRESH_INTERVAL, QualityTiers.refreshInterval(tier));
+    }
+
+    /**
+     * See {@link Backdrop.Client#getRefreshPeriodMillis()}
+     */
+    long getRefreshPeriodMillis(Config config) {
+        float rate = config.BACKDROP_REFRESH_RATE;
+        if (isBursting() || !(rate > 0f)) return 0;
+        return (long) (1000f / rate);
+    }
+}
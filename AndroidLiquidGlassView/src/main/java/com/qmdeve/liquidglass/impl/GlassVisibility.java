@@ -0,0 +1,79 @@
+/**
+ * Copyright 2025 QmDeve
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author QmDeve
+ * @github https://github.com/QmDeve
+ * @since 2025-11-01
+ */
+
+
+package com.qmdeve.liquidglass.impl;
+
+import android.os.Build;
+import android.view.View;
+
+import java.lang.reflect.Method;
+
+/**
+ * Leaves a glass view out while its source is drawn for a capture. Only the visibility flag is
+ * flipped, so this triggers no invalidation or layout. Main thread only.
+ */
+final class GlassVisibility {
+
+    private static Method setTransitionVisibility;
+    private static boolean lookedUp;
+
+    private GlassVisibility() {
+    }
+
+    /**
+     * @return whether the view was hidden and has to be shown again with {@link #show(View)}
+     */
+    static boolean hide(View view) {
+        return view.getVisibility() == View.VISIBLE && set(view, View.INVISIBLE);
+    }
+
+    static void show(View view) {
+        set(view, View.VISIBLE);
+    }
+
+    private static boolean set(View view, int visibility) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            view.setTransitionVisibility(visibility);
+            return true;
+        }
+        // The same method exists since API 21, it was only made public in API 29
+        Method method = lookup();
+        if (method == null) return false;
+        try {
+            method.invoke(view, visibility);
+            return true;
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+
+    private static Method lookup() {
+        if (!lookedUp) {
+            lookedUp = true;
+            try {
+                setTransitionVisibility = View.class.getMethod("setTransitionVisibility", int.class);
+            } catch (NoSuchMethodException e) {
+                setTransitionVisibility = null;
+            }
+        }
+        return setTransitionVisibility;
+    }
+}
@@ -22,9 +22,17 @@ package com.qmdeve.liquidglass.impl;
 
 import android.graphics.Canvas;
 
+import com.qmdeve.liquidglass.LiquidGlassMetrics;
+
 public interface Impl {
     void onSizeChanged(int w, int h);
     void onPreDraw();
     void draw(Canvas c);
+    default void setQualityTier(int tier) {}
+    default void setMotionQualityTier(int tier) {}
+    default void setBackdropFrozen(boolean frozen) {}
+    default void setMetrics(LiquidGlassMetrics metrics) {}
+    default void refreshBackdrop(long durationMs) {}
+    default void setSnapshotMode(boolean snapshot) {}
     default void dispose() {}
 }
\ No newline at end of file
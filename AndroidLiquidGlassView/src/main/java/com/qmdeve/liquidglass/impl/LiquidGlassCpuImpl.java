@@ -0,0 +1,585 @@
+/**
+ * Copyright 2025 QmDeve
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author QmDeve
+ * @github https://github.com/QmDeve
+ * @since 2025-11-01
+ */
+
+
+package com.qmdeve.liquidglass.impl;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Picture;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.view.ViewTreeObserver;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+import com.qmdeve.liquidglass.Config;
+import com.qmdeve.liquidglass.LiquidGlassMetrics;
+import com.qmdeve.liquidglass.QualityGovernor;
+import com.qmdeve.liquidglass.util.GlassTrace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Glass for devices without RuntimeShader. The source is drawn in software into a downsampled
+ * bitmap, blurred and refracted by {@link RefractionKernel} in tiles on
+ * {@link GlassExecutors#compute()}, and the result is drawn scaled back up.
+ * <p>
+ * Only one frame is in flight at a time and updates are capped well below the display rate,
+ * so the glass lags the content below it by a frame or two while it changes.
+ */
+public final class LiquidGlassCpuImpl implements Impl {
+
+    /**
+     * Shortest time between two updates, a software capture at display rate costs more than it shows
+     */
+    private static final long MIN_UPDATE_INTERVAL_MS = 33;
+
+    private static final String TAG = "LiquidGlassCpu";
+
+    private static final int STAGE_PREMULTIPLY = 0, STAGE_BLUR_ROWS = 1, STAGE_BLUR_COLUMNS = 2, STAGE_REFRACT = 3;
+
+    private final View host, target;
+    private final GlassHost glassHost;
+    private final Config config;
+    private final RefractionKernel kernel = new RefractionKernel();
+    private final Rect srcRect = new Rect(), dstRect = new Rect();
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final List<Callable<Void>> tiles = new ArrayList<>();
+    private final String tracePreDraw, traceCapture, traceRender, traceMotion;
+
+    private Bitmap captureBitmap, outputBitmap;
+    private Canvas captureCanvas;
+    private int[] srcPixels, tmpPixels, dstPixels;
+    private int scale = 1, resultScale;
+    private int[] blurRadii;
+
+    // Set by the job between stages, read by the tiles
+    private int stage, blurRadius;
+
+    private boolean busy, hasResult, selfInvalidated, counted;
+    /**
+     * The source cannot be drawn in software, see {@link #capture(int, int)}
+     */
+    private boolean captureFailed;
+    private int generation;
+    private long capturedArea;
+    private boolean pending = true, frozen, snapshot;
+    private int lastDx = Integer.MIN_VALUE, lastDy = Integer.MIN_VALUE;
+    private int lastScrollX, lastScrollY, lastWidth, lastHeight;
+    private int lastVersion = -1;
+    private long lastUpdateMs, captureNanos;
+    /**
+     * Tier the glass is rendered at, the lower of the governor tier and the motion tier
+     */
+    private int qualityTier = QualityGovernor.TIER_HIGH;
+    private int governorTier = QualityGovernor.TIER_HIGH;
+    private int motionTier = QualityGovernor.TIER_HIGH;
+    private boolean moved, scrolled, inMotion;
+    private final ViewTreeObserver.OnScrollChangedListener scrollListener = () -> scrolled = true;
+    @Nullable
+    private LiquidGlassMetrics metrics;
+
+    /**
+     * @param glass outermost view of the glass, left out of its own capture
+     */
+    public LiquidGlassCpuImpl(View host, View glass, View target, Config config) {
+        this.host = host;
+        this.target = target;
+        this.glassHost = new GlassHost(host, target, glass);
+        this.config = config;
+        // The result is a plain bitmap, a hardware layer around it only costs memory
+        host.setLayerType(View.LAYER_TYPE_NONE, null);
+        String traceName = GlassTrace.nameOf("LiquidGlassCpu", glass);
+        this.tracePreDraw = traceName + ".onPreDraw";
+        this.traceCapture = traceName + ".capture";
+        this.traceRender = traceName + ".render";
+        this.traceMotion = traceName + ".motion";
+    }
+
+    @Override
+    public void onSizeChanged(int w, int h) {
+        pending = true;
+    }
+
+    @Override
+    public void setQualityTier(int tier) {
+        governorTier = tier;
+        applyQualityTier(tier);
+    }
+
+    @Override
+    public void setMotionQualityTier(int tier) {
+        motionTier = tier;
+    }
+
+    private void applyQualityTier(int tier) {
+        if (qualityTier == tier) return;
+        qualityTier = tier;
+        // A frozen or snapshot glass keeps its result, the tier applies to its next capture
+        if (!frozen && !snapshot) pending = true;
+    }
+
+    /**
+     * Drop to the motion tier while the glass moves or anything in the window scrolls,
+     * and come back on the first frame where neither happened. Call after {@link #hasChanged(int, int)}.
+     */
+    private void updateMotion() {
+        boolean moving = (scrolled || moved) && motionTier != QualityGovernor.TIER_HIGH;
+        scrolled = false;
+
+        if (moving != inMotion) {
+            inMotion = moving;
+            if (moving) GlassTrace.beginAsync(traceMotion, System.identityHashCode(this));
+            else GlassTrace.endAsync(traceMotion, System.identityHashCode(this));
+        }
+        if (moving) {
+            // Nothing else may draw once the motion stops, so ask for the idle frame
+            host.postInvalidateOnAnimation();
+            applyQualityTier(Math.max(governorTier, motionTier));
+        } else {
+            applyQualityTier(governorTier);
+        }
+    }
+
+    @Override
+    public void setBackdropFrozen(boolean frozen) {
+        this.frozen = frozen;
+        if (!frozen) {
+            pending = true;
+            host.invalidate();
+        }
+    }
+
+    @Override
+    public void setSnapshotMode(boolean snapshot) {
+        if (this.snapshot == snapshot) return;
+        this.snapshot = snapshot;
+        pending = true;
+        host.invalidate();
+    }
+
+    @Override
+    public void refreshBackdrop(long durationMs) {
+        captureFailed = false;
+        glassHost.startBurst(durationMs);
+        pending = true;
+        host.invalidate();
+    }
+
+    @Override
+    public void setMetrics(@Nullable LiquidGlassMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void onPreDraw() {
+        boolean traced = GlassTrace.begin(tracePreDraw);
+        try {
+            int w = host.getWidth(), h = host.getHeight();
+            if (w == 0 || h == 0 || target.getWidth() == 0 || target.getHeight() == 0) return;
+            if (captureFailed) return;
+            // Nothing to do while nobody can see the glass, but whatever changed meanwhile is caught up after
+            if (!glassHost.isVisibleOnScreen()) {
+                pending = true;
+                lastDx = lastDy = Integer.MIN_VALUE;
+                return;
+            }
+
+            boolean changed = hasChanged(w, h);
+            updateMotion();
+            changed |= pending;
+            LiquidGlassMetrics m = metrics;
+            if (!changed) {
+                if (m != null) m.onFrame(true);
+                return;
+            }
+            pending = true;
+
+            long now = SystemClock.uptimeMillis();
+            boolean bursting = glassHost.isBursting();
+            if (busy) return;
+            if (!bursting && now - lastUpdateMs < getUpdateIntervalMs()) {
+                // Nothing else may draw once the content settles, so come back for the last change
+                host.postInvalidateOnAnimation();
+                return;
+            }
+
+            lastUpdateMs = now;
+            pending = false;
+            if (!capture(w, h)) return;
+            if (m != null) {
+                m.onBackdropRecord(captureNanos, capturedArea);
+                m.onMemory(0, getMemoryBytes());
+                m.onFrame(false);
+            }
+            submit();
+        } finally {
+            GlassTrace.end(traced);
+        }
+    }
+
+    private boolean hasChanged(int w, int h) {
+        boolean self = selfInvalidated;
+        selfInvalidated = false;
+
+        GlassHost g = glassHost;
+        g.updateOffset();
+        int scrollX = target.getScrollX(), scrollY = target.getScrollY();
+        int version = config.getVersion();
+        boolean changed = pending || !hasResult || w != lastWidth || h != lastHeight || version != lastVersion;
+        boolean moved = g.offsetX != lastDx || g.offsetY != lastDy || scrollX != lastScrollX || scrollY != lastScrollY;
+        // Not moving when there was nothing to compare with
+        this.moved = moved && lastDx != Integer.MIN_VALUE;
+        lastDx = g.offsetX;
+        lastDy = g.offsetY;
+        lastScrollX = scrollX;
+        lastScrollY = scrollY;
+        lastWidth = w;
+        lastHeight = h;
+        lastVersion = version;
+        if (changed) return true;
+        // A frozen or snapshot glass keeps its last result, even when it moves
+        if (frozen || snapshot) return false;
+        return moved || isSourceDirty(self);
+    }
+
+    /**
+     * @param self whether the glass invalidated itself since the last frame, which dirties the
+     *             source too, so only the source's other children count
+     */
+    private boolean isSourceDirty(boolean self) {
+        if (!target.isDirty()) return false;
+        if (!self || !(target instanceof ViewGroup)) return true;
+
+        View branch = glassHost.glass;
+        for (ViewParent p = branch.getParent(); p instanceof View && p != target; p = p.getParent()) {
+            branch = (View) p;
+        }
+        ViewGroup group = (ViewGroup) target;
+        for (int i = 0, n = group.getChildCount(); i < n; i++) {
+            View child = group.getChildAt(i);
+            if (child != branch && child.isDirty()) return true;
+        }
+        return false;
+    }
+
+    private long getUpdateIntervalMs() {
+        float rate = config.BACKDROP_REFRESH_RATE;
+        long interval = rate > 0f ? Math.max(MIN_UPDATE_INTERVAL_MS, (long) (1000f / rate)) : MIN_UPDATE_INTERVAL_MS;
+        int frames = Math.max(config.BACKDROP_REFRESH_INTERVAL, QualityTiers.refreshInterval(qualityTier));
+        return interval * frames;
+    }
+
+    /**
+     * Draw the source around the glass into the capture buffer and configure the kernel
+     *
+     * @return false if the source could not be captured, the glass then shows nothing
+     */
+    private boolean capture(int w, int h) {
+        boolean traced = GlassTrace.begin(traceCapture);
+        long start = metrics != null ? System.nanoTime() : 0;
+        try {
+            int tier = qualityTier;
+            float sigma = Math.min(Math.max(0f, config.BLUR_RADIUS), QualityTiers.maxBlurSigma(tier));
+            scale = Math.max(resolveCaptureScale(config.CAPTURE_SCALE, sigma), QualityTiers.minCaptureScale(tier));
+
+            // Same reach as the GPU path, refracted taps and the blur kernel land outside the glass
+            int margin = (int) Math.ceil(Math.abs(config.REFRACTION_OFFSET) * (1f + Math.abs(config.DISPERSION)) + 3f * sigma);
+            margin = (margin + scale - 1) / scale * scale;
+            int cw = (w + 2 * margin + scale - 1) / scale, ch = (h + 2 * margin + scale - 1) / scale;
+            int ow = (w + scale - 1) / scale, oh = (h + scale - 1) / scale;
+            ensureBuffers(cw, ch, ow, oh);
+
+            int dx = glassHost.offsetX + target.getScrollX() - margin, dy = glassHost.offsetY + target.getScrollY() - margin;
+            // The glass must not end up in its own backdrop
+            View glass = glassHost.glass;
+            boolean hidden = GlassVisibility.hide(glass);
+            try {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+                    capturePicture(cw, ch, dx, dy);
+                } else {
+                    captureSoftware(cw, ch, dx, dy);
+                }
+            } catch (IllegalArgumentException e) {
+                // Software rendering does not support hardware bitmaps, e.g. inside a software layer
+                Log.w(TAG, "Source cannot be captured, glass disabled until refreshBackdrop()", e);
+                captureFailed = true;
+                hasResult = false;
+                host.invalidate();
+                return false;
+            } finally {
+                if (hidden) GlassVisibility.show(glass);
+            }
+            capturedArea = (long) cw * ch * scale * scale;
+            if (!counted) {
+                counted = true;
+                target.getViewTreeObserver().addOnScrollChangedListener(scrollListener);
+                GlassTrace.onInstanceCreated();
+            }
+
+            blurRadii = RefractionKernel.boxBlurRadii(sigma / scale);
+            configureKernel(cw, ch, ow, oh, margin);
+            return true;
+        } finally {
+            if (start != 0) captureNanos = System.nanoTime() - start;
+            GlassTrace.end(traced);
+        }
+    }
+
+    /**
+     * Record the source into a Picture, which accepts hardware bitmaps. It is only rendered
+     * on the GPU and read back when it holds any, otherwise it is drawn into the reused bitmap.
+     */
+    @RequiresApi(api = Build.VERSION_CODES.P)
+    private void capturePicture(int cw, int ch, int dx, int dy) {
+        Picture picture = new Picture();
+        Canvas canvas = picture.beginRecording(cw, ch);
+        try {
+            canvas.scale(1f / scale, 1f / scale);
+            canvas.translate(-dx, -dy);
+            target.draw(canvas);
+        } finally {
+            picture.endRecording();
+        }
+
+        if (picture.requiresHardwareAcceleration()) {
+            Bitmap bitmap = Bitmap.createBitmap(picture, cw, ch, Bitmap.Config.ARGB_8888);
+            bitmap.getPixels(srcPixels, 0, cw, 0, 0, cw, ch);
+            bitmap.recycle();
+        } else {
+            captureBitmap.eraseColor(0);
+            captureCanvas.drawPicture(picture);
+            captureBitmap.getPixels(srcPixels, 0, cw, 0, 0, cw, ch);
+        }
+    }
+
+    private void captureSoftware(int cw, int ch, int dx, int dy) {
+        captureBitmap.eraseColor(0);
+        Canvas canvas = captureCanvas;
+        int save = canvas.save();
+        try {
+            canvas.scale(1f / scale, 1f / scale);
+            canvas.translate(-dx, -dy);
+            target.draw(canvas);
+        } finally {
+            canvas.restoreToCount(save);
+        }
+        captureBitmap.getPixels(srcPixels, 0, cw, 0, 0, cw, ch);
+    }
+
+    private void configureKernel(int cw, int ch, int ow, int oh, int margin) {
+        RefractionKernel k = kernel;
+        float s = scale;
+        float glassWidth = config.WIDTH > 0 ? config.WIDTH : host.getWidth();
+        float glassHeight = config.HEIGHT > 0 ? config.HEIGHT : host.getHeight();
+        k.width = ow;
+        k.height = oh;
+        k.glassWidth = glassWidth / s;
+        k.glassHeight = glassHeight / s;
+        k.srcWidth = cw;
+        k.srcHeight = ch;
+        k.srcOffsetX = k.srcOffsetY = margin / s;
+        k.cornerRadius = config.CORNER_RADIUS_PX / s;
+        k.refractionHeight = config.REFRACTION_HEIGHT / s;
+        k.refractionAmount = config.REFRACTION_OFFSET / s;
+        k.minSmoothRadius = 30f / s;
+        k.depthEffect = config.DEPTH_EFFECT;
+        k.dispersion = config.DISPERSION;
+        k.dispersionQuality = QualityTiers.dispersionQuality(qualityTier, config.DISPERSION_QUALITY,
+                config.REFRACTION_OFFSET * config.DISPERSION);
+        k.contrast = config.CONTRAST;
+        k.whitePoint = config.WHITE_POINT;
+        k.chromaMultiplier = config.CHROMA_MULTIPLIER;
+        k.tintRed = config.TINT_COLOR_RED;
+        k.tintGreen = config.TINT_COLOR_GREEN;
+        k.tintBlue = config.TINT_COLOR_BLUE;
+        k.tintAlpha = config.TINT_ALPHA;
+    }
+
+    /**
+     * Bitmaps and pixel buffers are kept across frames and only reallocated when they grow
+     */
+    private void ensureBuffers(int cw, int ch, int ow, int oh) {
+        if (captureBitmap == null || captureBitmap.getWidth() < cw || captureBitmap.getHeight() < ch) {
+            captureBitmap = Bitmap.createBitmap(cw, ch, Bitmap.Config.ARGB_8888);
+            captureCanvas = new Canvas(captureBitmap);
+        }
+        if (srcPixels == null || srcPixels.length < cw * ch) {
+            srcPixels = new int[cw * ch];
+            tmpPixels = new int[cw * ch];
+        }
+        if (dstPixels == null || dstPixels.length < ow * oh) dstPixels = new int[ow * oh];
+        // The output is replaced while a previous result may still be drawn, so it is sized exactly
+        if (outputBitmap == null || outputBitmap.getWidth() != ow || outputBitmap.getHeight() != oh) {
+            outputBitmap = Bitmap.createBitmap(ow, oh, Bitmap.Config.ARGB_8888);
+            hasResult = false;
+        }
+        if (tiles.isEmpty()) {
+            for (int i = 0, n = GlassExecutors.computeThreads() * 2; i < n; i++) tiles.add(new Tile(i, n));
+        }
+    }
+
+    private long getMemoryBytes() {
+        long bytes = 4L * (srcPixels.length + tmpPixels.length + dstPixels.length);
+        bytes += captureBitmap.getAllocationByteCount() + outputBitmap.getAllocationByteCount();
+        return bytes;
+    }
+
+    private void submit() {
+        busy = true;
+        int gen = generation;
+        GlassExecutors.background().execute(() -> render(gen));
+    }
+
+    /**
+     * Runs on the background thread, which only coordinates the compute pool
+     */
+    private void render(int gen) {
+        boolean traced = GlassTrace.begin(traceRender);
+        try {
+            runStage(STAGE_PREMULTIPLY);
+            int[] radii = blurRadii;
+            if (radii != null) {
+                for (int radius : radii) {
+                    if (radius <= 0) continue;
+                    blurRadius = radius;
+                    runStage(STAGE_BLUR_ROWS);
+                    runStage(STAGE_BLUR_COLUMNS);
+                }
+            }
+            runStage(STAGE_REFRACT);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            GlassTrace.end(traced);
+            GlassExecutors.main().post(() -> onRendered(gen));
+        }
+    }
+
+    private void runStage(int stage) throws InterruptedException {
+        this.stage = stage;
+        GlassExecutors.compute().invokeAll(tiles);
+    }
+
+    private void onRendered(int gen) {
+        busy = false;
+        // Disposed meanwhile, the next capture starts over
+        if (gen != generation || outputBitmap == null) return;
+        RefractionKernel k = kernel;
+        outputBitmap.setPixels(dstPixels, 0, k.width, 0, 0, k.width, k.height);
+        resultScale = scale;
+        hasResult = true;
+        selfInvalidated = true;
+        host.invalidate();
+    }
+
+    /**
+     * One band of rows, or of columns for the vertical blur
+     */
+    private final class Tile implements Callable<Void> {
+        private final int index, count;
+
+        Tile(int index, int count) {
+            this.index = index;
+            this.count = count;
+        }
+
+        @Override
+        public Void call() {
+            RefractionKernel k = kernel;
+            switch (stage) {
+                case STAGE_PREMULTIPLY:
+                    int rowStart = bandStart(k.srcHeight);
+                    RefractionKernel.premultiply(srcPixels, rowStart * k.srcWidth,
+                            (rowStart + bandSize(k.srcHeight)) * k.srcWidth);
+                    break;
+                case STAGE_BLUR_ROWS:
+                    RefractionKernel.boxBlurRows(srcPixels, tmpPixels, k.srcWidth, k.srcHeight, blurRadius,
+                            bandStart(k.srcHeight), bandStart(k.srcHeight) + bandSize(k.srcHeight));
+                    break;
+                case STAGE_BLUR_COLUMNS:
+                    RefractionKernel.boxBlurColumns(tmpPixels, srcPixels, k.srcWidth, k.srcHeight, blurRadius,
+                            bandStart(k.srcWidth), bandStart(k.srcWidth) + bandSize(k.srcWidth));
+                    break;
+                default:
+                    k.run(srcPixels, dstPixels, bandStart(k.height), bandStart(k.height) + bandSize(k.height));
+                    break;
+            }
+            return null;
+        }
+
+        private int bandStart(int length) {
+            return (int) ((long) length * index / count);
+        }
+
+        private int bandSize(int length) {
+            return (int) ((long) length * (index + 1) / count) - bandStart(length);
+        }
+    }
+
+    /**
+     * Same steps as the GPU path, but never full resolution, the kernel is too slow for that
+     */
+    private static int resolveCaptureScale(int setting, float sigma) {
+        if (setting == 2 || setting == 4) return setting;
+        return sigma >= 8f ? 4 : 2;
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        if (!hasResult || outputBitmap == null) return;
+        srcRect.set(0, 0, outputBitmap.getWidth(), outputBitmap.getHeight());
+        dstRect.set(0, 0, outputBitmap.getWidth() * resultScale, outputBitmap.getHeight() * resultScale);
+        canvas.drawBitmap(outputBitmap, srcRect, dstRect, paint);
+    }
+
+    @Override
+    public void dispose() {
+        generation++;
+        hasResult = false;
+        captureFailed = false;
+        pending = true;
+        lastDx = lastDy = Integer.MIN_VALUE;
+        if (counted) {
+            counted = false;
+            ViewTreeObserver observer = target.getViewTreeObserver();
+            if (observer.isAlive()) observer.removeOnScrollChangedListener(scrollListener);
+            GlassTrace.onInstanceDisposed();
+        }
+        if (inMotion) {
+            inMotion = false;
+            GlassTrace.endAsync(traceMotion, System.identityHashCode(this));
+        }
+        // A job still in flight holds the pixel buffers, so the bitmaps are left to the GC, not recycled
+        captureBitmap = null;
+        captureCanvas = null;
+        outputBitmap = null;
+    }
+}
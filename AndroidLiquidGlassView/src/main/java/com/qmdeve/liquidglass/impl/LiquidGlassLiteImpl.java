@@ -0,0 +1,438 @@
+/**
+ * Copyright 2025 QmDeve
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author QmDeve
+ * @github https://github.com/QmDeve
+ * @since 2025-11-01
+ */
+
+
+package com.qmdeve.liquidglass.impl;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorMatrix;
+import android.graphics.ColorMatrixColorFilter;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RenderEffect;
+import android.graphics.RenderNode;
+import android.os.Build;
+import android.view.View;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+import com.qmdeve.liquidglass.Config;
+import com.qmdeve.liquidglass.LiquidGlassMetrics;
+import com.qmdeve.liquidglass.QualityGovernor;
+import com.qmdeve.liquidglass.util.GlassTrace;
+
+/**
+ * Glass built from platform RenderEffects only, for API 31 and 32 where RuntimeShader is missing.
+ * The backdrop is blurred and colour filtered on the GPU, and the refraction band is suggested by
+ * a precomputed edge highlight instead of being refracted.
+ */
+@RequiresApi(api = Build.VERSION_CODES.S)
+public final class LiquidGlassLiteImpl implements Impl, Backdrop.Client {
+
+    /**
+     * The highlight is smooth, so it is baked at this fraction of the glass size
+     */
+    private static final int HIGHLIGHT_SCALE = 2;
+    private static final float HIGHLIGHT_STRENGTH = 0.45f;
+
+    private final View host, target;
+    private final GlassHost glassHost;
+    private final Config config;
+    private final RenderNode node, contentNode;
+    private Backdrop backdrop;
+    private int recordedDx = Integer.MIN_VALUE, recordedDy = Integer.MIN_VALUE;
+    private int captureScale = 1, recordedScale;
+    private final Rect highlightDst = new Rect();
+    private final Paint highlightPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private int lastVersion;
+    private boolean needsUpdate = true;
+
+    @Nullable
+    private Bitmap highlight;
+    @Nullable
+    private HighlightKey highlightKey, requestedHighlightKey;
+
+    private int qualityTier = QualityGovernor.TIER_HIGH;
+    private boolean frozen, snapshot;
+    @Nullable
+    private LiquidGlassMetrics metrics;
+    private int seenGeneration;
+    private final String tracePreDraw, traceEffect;
+
+    /**
+     * @param glass outermost view of the glass, see {@link #getGlassView()}
+     */
+    public LiquidGlassLiteImpl(View host, View glass, View target, Config config) {
+        this.host = host;
+        this.target = target;
+        this.glassHost = new GlassHost(host, target, glass);
+        this.config = config;
+        this.node = new RenderNode("AndroidLiquidGlassView:lite");
+        this.node.setClipToBounds(true);
+        this.contentNode = new RenderNode("AndroidLiquidGlassView:lite:content");
+        String traceName = GlassTrace.nameOf("LiquidGlassLite", glass);
+        this.tracePreDraw = traceName + ".onPreDraw";
+        this.traceEffect = traceName + ".applyRenderEffect";
+    }
+
+    @Override
+    public void onSizeChanged(int w, int h) {
+        node.setPosition(0, 0, w, h);
+        needsUpdate = true;
+    }
+
+    @Override
+    public void setQualityTier(int tier) {
+        if (qualityTier == tier) return;
+        qualityTier = tier;
+        needsUpdate = true;
+    }
+
+    @Override
+    public void setBackdropFrozen(boolean frozen) {
+        this.frozen = frozen;
+        if (!frozen) host.invalidate();
+    }
+
+    @Override
+    public void setMetrics(@Nullable LiquidGlassMetrics metrics) {
+        this.metrics = metrics;
+        if (backdrop != null) seenGeneration = backdrop.getGeneration();
+    }
+
+    @Override
+    public void onPreDraw() {
+        boolean traced = GlassTrace.begin(tracePreDraw);
+        try {
+            if (!getGlassView().isShown()) return;
+            int version = config.getVersion();
+            if (version != lastVersion || needsUpdate) {
+                lastVersion = version;
+                config.consumeDirty();
+                needsUpdate = false;
+                applyRenderEffect();
+            }
+
+            LiquidGlassMetrics m = metrics;
+            if (m == null) {
+                record();
+                return;
+            }
+            long start = System.nanoTime();
+            boolean recorded = record();
+            if (recorded) m.onRecord(System.nanoTime() - start);
+            boolean backdropRecorded = backdrop != null && backdrop.getGeneration() != seenGeneration;
+            if (backdropRecorded) {
+                seenGeneration = backdrop.getGeneration();
+                m.onBackdropRecord(backdrop.getLastRecordNanos(), backdrop.getRecordedArea());
+            }
+            if (recorded || backdropRecorded) {
+                long displayLists = node.computeApproximateMemoryUsage() + contentNode.computeApproximateMemoryUsage();
+                if (backdrop != null) displayLists += backdrop.getNode().computeApproximateMemoryUsage();
+                long layers = 4L * contentNode.getWidth() * contentNode.getHeight();
+                if (highlight != null) layers += highlight.getAllocationByteCount();
+                if (backdrop != null) layers += backdrop.getSnapshotBytes();
+                m.onMemory(displayLists, layers);
+            }
+            m.onFrame(!recorded && !backdropRecorded);
+        } finally {
+            GlassTrace.end(traced);
+        }
+    }
+
+    /**
+     * @return false if the recording was still up to date
+     */
+    private boolean record() {
+        int w = host.getWidth(), h = host.getHeight();
+        if (w == 0 || h == 0 || target.getWidth() == 0 || target.getHeight() == 0) return false;
+        if (backdrop == null) {
+            backdrop = Backdrop.acquire(target, this, snapshot);
+            GlassTrace.onInstanceCreated();
+            recordedDx = Integer.MIN_VALUE;
+        }
+
+        int scale = captureScale;
+        int cw = (w + scale - 1) / scale, ch = (h + scale - 1) / scale;
+        if (contentNode.getWidth() != cw || contentNode.getHeight() != ch) {
+            contentNode.setPosition(0, 0, cw, ch);
+            recordedScale = 0;
+        }
+
+        glassHost.updateOffset();
+        int dx = glassHost.offsetX + target.getScrollX(), dy = glassHost.offsetY + target.getScrollY();
+        if (dx == recordedDx && dy == recordedDy && scale == recordedScale && node.hasDisplayList()) return false;
+
+        Canvas rec = contentNode.beginRecording(cw, ch);
+        if (scale > 1) rec.scale(1f / scale, 1f / scale);
+        rec.translate(-dx, -dy);
+        rec.drawRenderNode(backdrop.getNode());
+        contentNode.endRecording();
+
+        // The highlight goes on top of the filtered backdrop, so the filter leaves it alone
+        rec = node.beginRecording(w, h);
+        int save = rec.save();
+        if (scale > 1) rec.scale(scale, scale);
+        rec.drawRenderNode(contentNode);
+        rec.restoreToCount(save);
+        Bitmap bitmap = highlight;
+        if (bitmap != null) {
+            highlightDst.set(0, 0, w, h);
+            rec.drawBitmap(bitmap, null, highlightDst, highlightPaint);
+        }
+        node.endRecording();
+
+        recordedDx = dx;
+        recordedDy = dy;
+        recordedScale = scale;
+        return true;
+    }
+
+    private void applyRenderEffect() {
+        boolean traced = GlassTrace.begin(traceEffect);
+        try {
+            int tier = qualityTier;
+            float blurLevel = Math.min(Math.max(0f, config.BLUR_RADIUS), QualityTiers.maxBlurSigma(tier));
+            captureScale = Math.max(GlassHost.resolveCaptureScale(config.CAPTURE_SCALE, blurLevel), QualityTiers.minCaptureScale(tier));
+
+            int blurStep = BlurLadder.step(blurLevel / captureScale);
+            if (metrics != null) {
+                metrics.onEffectUpdate();
+                if (blurStep != BlurLadder.NONE) metrics.onBlurLookup(BlurLadder.isCached(blurStep));
+            }
+            RenderEffect effect = BlurLadder.effect(blurStep);
+            ColorMatrixColorFilter filter = createColorFilter();
+            if (filter != null) {
+                effect = effect != null
+                        ? RenderEffect.createColorFilterEffect(filter, effect)
+                        : RenderEffect.createColorFilterEffect(filter);
+            }
+            contentNode.setRenderEffect(effect);
+            requestHighlight();
+        } finally {
+            GlassTrace.end(traced);
+        }
+    }
+
+    /**
+     * Saturation, white point, contrast and tint folded into one matrix, in the shader's order.
+     * ColorMatrix works in gamma space, so saturation is close to, but not exactly, the shader's.
+     *
+     * @return null when the matrix would be the identity
+     */
+    @Nullable
+    private ColorMatrixColorFilter createColorFilter() {
+        float chroma = config.CHROMA_MULTIPLIER, whitePoint = config.WHITE_POINT, contrast = config.CONTRAST;
+        float tintAlpha = config.TINT_ALPHA;
+        if (chroma == 1f && whitePoint == 0f && contrast == 0f && tintAlpha == 0f) return null;
+
+        ColorMatrix matrix = new ColorMatrix();
+        matrix.setSaturation(chroma);
+        if (whitePoint != 0f) {
+            float amount = Math.abs(whitePoint);
+            float offset = whitePoint > 0f ? 255f * amount : 0f;
+            matrix.postConcat(scaleAndOffset(1f - amount, offset, offset, offset));
+        }
+        if (contrast != 0f) {
+            float gain = 1f + contrast;
+            float offset = 127.5f * (1f - gain);
+            matrix.postConcat(scaleAndOffset(gain, offset, offset, offset));
+        }
+        if (tintAlpha != 0f) {
+            matrix.postConcat(scaleAndOffset(1f - tintAlpha, 255f * config.TINT_COLOR_RED * tintAlpha,
+                    255f * config.TINT_COLOR_GREEN * tintAlpha, 255f * config.TINT_COLOR_BLUE * tintAlpha));
+        }
+        return new ColorMatrixColorFilter(matrix);
+    }
+
+    private static ColorMatrix scaleAndOffset(float scale, float red, float green, float blue) {
+        return new ColorMatrix(new float[]{
+                scale, 0, 0, 0, red,
+                0, scale, 0, 0, green,
+                0, 0, scale, 0, blue,
+                0, 0, 0, 1, 0
+        });
+    }
+
+    /**
+     * Bake the highlight for the current geometry in the background, if it is not baked already
+     */
+    private void requestHighlight() {
+        int w = config.WIDTH > 0 ? config.WIDTH : host.getWidth();
+        int h = config.HEIGHT > 0 ? config.HEIGHT : host.getHeight();
+        float radius = config.CORNER_RADIUS_PX, band = config.REFRACTION_HEIGHT;
+        if (w <= 0 || h <= 0 || !(band > 0f)) {
+            requestedHighlightKey = highlightKey = null;
+            if (highlight != null) {
+                highlight = null;
+                recordedScale = 0;
+            }
+            return;
+        }
+
+        HighlightKey key = new HighlightKey(w, h, radius, band);
+        if (key.equals(highlightKey) || key.equals(requestedHighlightKey)) return;
+        requestedHighlightKey = key;
+        GlassExecutors.background().execute(() -> {
+            Bitmap bitmap = bakeHighlight(w, h, radius, band);
+            GlassExecutors.main().post(() -> {
+                if (requestedHighlightKey != key) return;
+                highlight = bitmap;
+                highlightKey = key;
+                // Re-recorded with the highlight on the next frame
+                recordedScale = 0;
+                host.invalidate();
+            });
+        });
+    }
+
+    /**
+     * White rim over the refraction band, strongest towards the top left and bottom right edges,
+     * with the same falloff and geometry as the shader's displacement
+     */
+    private static Bitmap bakeHighlight(int w, int h, float radius, float band) {
+        int bw = Math.max(1, (w + HIGHLIGHT_SCALE - 1) / HIGHLIGHT_SCALE);
+        int bh = Math.max(1, (h + HIGHLIGHT_SCALE - 1) / HIGHLIGHT_SCALE);
+        float hw = w * 0.5f, hh = h * 0.5f;
+        float gradRadius = Math.min(Math.max(radius * 1.5f, 30f), Math.min(hw, hh));
+        float lightX = -0.70710677f, lightY = -0.70710677f;
+        float[] grad = new float[2];
+        int[] pixels = new int[bw * bh];
+
+        for (int y = 0; y < bh; y++) {
+            for (int x = 0; x < bw; x++) {
+                float cx = (x + 0.5f) * HIGHLIGHT_SCALE - hw, cy = (y + 0.5f) * HIGHLIGHT_SCALE - hh;
+                float sd = RefractionKernel.sdRoundedRect(cx, cy, hw, hh, radius);
+                if (-sd >= band) continue;
+                float rim = RefractionKernel.circleMap(1f - Math.max(0f, -sd) / band);
+                RefractionKernel.gradSdRoundedRect(cx, cy, hw, hh, gradRadius, grad);
+                float light = Math.abs(grad[0] * lightX + grad[1] * lightY);
+                int alpha = Math.round(Math.min(1f, rim * (0.35f + 0.65f * light) * HIGHLIGHT_STRENGTH) * 255f);
+                pixels[y * bw + x] = (alpha << 24) | 0xffffff;
+            }
+        }
+
+        Bitmap bitmap = Bitmap.createBitmap(bw, bh, Bitmap.Config.ARGB_8888);
+        bitmap.setPixels(pixels, 0, bw, 0, 0, bw, bh);
+        return bitmap;
+    }
+
+    /**
+     * The geometry a highlight is baked for
+     */
+    private static final class HighlightKey {
+        final int width, height;
+        final float cornerRadius, band;
+
+        HighlightKey(int width, int height, float cornerRadius, float band) {
+            this.width = width;
+            this.height = height;
+            this.cornerRadius = cornerRadius;
+            this.band = band;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof HighlightKey)) return false;
+            HighlightKey k = (HighlightKey) o;
+            return width == k.width && height == k.height && cornerRadius == k.cornerRadius && band == k.band;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = width;
+            h = 31 * h + height;
+            h = 31 * h + Float.floatToIntBits(cornerRadius);
+            return 31 * h + Float.floatToIntBits(band);
+        }
+    }
+
+    @Override
+    public boolean getSampleBounds(Rect outBounds) {
+        int w = host.getWidth(), h = host.getHeight();
+        if (w == 0 || h == 0 || !getGlassView().isShown()) return false;
+
+        GlassHost g = glassHost;
+        g.updateOffset();
+        // Nothing is refracted here, only the blur reaches outside the glass
+        int margin = (int) Math.ceil(3f * Math.max(0f, config.BLUR_RADIUS));
+        outBounds.set(g.offsetX - margin, g.offsetY - margin, g.offsetX + w + margin, g.offsetY + h + margin);
+        return true;
+    }
+
+    @Override
+    public int getRefreshInterval() {
+        return glassHost.getRefreshInterval(config, frozen, qualityTier);
+    }
+
+    @Override
+    public long getRefreshPeriodMillis() {
+        return glassHost.getRefreshPeriodMillis(config);
+    }
+
+    @Override
+    public void refreshBackdrop(long durationMs) {
+        glassHost.startBurst(durationMs);
+        if (backdrop != null) backdrop.invalidate();
+        host.invalidate();
+    }
+
+    @Override
+    public boolean isTimingRecords() {
+        return metrics != null;
+    }
+
+    @Override
+    public View getGlassView() {
+        return glassHost.glass;
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        if (!canvas.isHardwareAccelerated()) return;
+        canvas.drawRenderNode(node);
+    }
+
+    @Override
+    public void setSnapshotMode(boolean snapshot) {
+        if (this.snapshot == snapshot) return;
+        this.snapshot = snapshot;
+        if (backdrop != null) {
+            releaseBackdrop();
+            host.invalidate();
+        }
+    }
+
+    private void releaseBackdrop() {
+        backdrop.release(this);
+        backdrop = null;
+        GlassTrace.onInstanceDisposed();
+    }
+
+    @Override
+    public void dispose() {
+        if (backdrop != null) releaseBackdrop();
+        node.discardDisplayList();
+        contentNode.discardDisplayList();
+    }
+}
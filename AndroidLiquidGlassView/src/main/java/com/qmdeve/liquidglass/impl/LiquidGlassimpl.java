@@ -22,229 +22,533 @@ package com.qmdeve.liquidglass.impl;
 
 import android.content.res.Resources;
 import android.graphics.Canvas;
+import android.graphics.Rect;
 import android.graphics.RenderEffect;
 import android.graphics.RenderNode;
 import android.graphics.RuntimeShader;
-import android.graphics.Shader;
 import android.os.Build;
 import android.view.View;
+import android.view.ViewTreeObserver;
 
+import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
 
 import com.qmdeve.liquidglass.Config;
+import com.qmdeve.liquidglass.LiquidGlassMetrics;
+import com.qmdeve.liquidglass.QualityGovernor;
 import com.qmdeve.liquidglass.R;
-
-import org.intellij.lang.annotations.Language;
-
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import com.qmdeve.liquidglass.util.GlassTrace;
 
 @RequiresApi(api = Build.VERSION_CODES.TIRAMISU)
-public final class LiquidGlassimpl implements Impl {
+public final class LiquidGlassimpl implements Impl, Backdrop.Client {
+
+    private static int nextUniformToken;
 
     private final View host, target;
-    private final RenderNode node;
-    private RenderEffect cachedBlurEffect;
-    private final int[] tp = new int[2];
-    private final int[] hp = new int[2];
-    private final RuntimeShader liquidShader;
-    private float lastCornerRadius, lastEccentricFactor, lastRefractionHeight, lastRefractionAmount,
-            lastContrast, lastWhitePoint, lastChromaMultiplier, lastSigma,
-            lastChromaticAberration, lastDepthEffect, lastBlurLevel,
-            lastTintRed, lastTintGreen, lastTintBlue, lastTintAlpha;
+    private final GlassHost glassHost;
+    private final RenderNode node, contentNode;
+    private Backdrop backdrop;
+    private int recordedDx = Integer.MIN_VALUE, recordedDy = Integer.MIN_VALUE;
+    private int captureScale = 1, recordedScale;
+    private ShaderCache.Program program;
+    private RuntimeShader liquidShader;
+    private int programVariant;
+    /**
+     * Baked refraction geometry for the current shape, null until it is ready
+     */
+    @Nullable
+    private DisplacementMap displacementMap;
+    private boolean mapDirty, baking;
+    private final EffectCache.Key effectKey = new EffectCache.Key(24);
+    private final float[] size = new float[2];
+    private final float[] offset = new float[2];
+    private final float[] cornerRadii = new float[4];
+    private final float[] tintColor = new float[3];
+    private int lastVersion;
+    /**
+     * Config fields changed since their uniforms were last uploaded
+     */
+    private int uniformDirty = Config.DIRTY_ALL;
+    private final int uniformToken = ++nextUniformToken;
 
     private boolean needsUpdate = true;
-    private long lastBlurUpdateTime = 0;
+    /**
+     * Tier the effects are built for, the lower of the governor tier and the motion tier
+     */
+    private int qualityTier = QualityGovernor.TIER_HIGH;
+    private int governorTier = QualityGovernor.TIER_HIGH;
+    private int motionTier = QualityGovernor.TIER_HIGH;
+    private int lastDx = Integer.MIN_VALUE, lastDy = Integer.MIN_VALUE;
+    private boolean scrolled, frozen, snapshot;
+    private boolean contentHasEffect;
+    @Nullable
+    private LiquidGlassMetrics metrics;
+    private int seenGeneration;
+    private final String tracePreDraw, traceRecord, traceEffect, traceDraw, traceMotion, traceEffectCount;
+    private int effectRebuilds;
+    private boolean inMotion;
+    private final ViewTreeObserver.OnScrollChangedListener scrollListener = () -> scrolled = true;
     private final Config config;
 
-    public LiquidGlassimpl(View host, View target, Config config) {
+    /**
+     * @param glass outermost view of the glass, see {@link #getGlassView()}
+     */
+    public LiquidGlassimpl(View host, View glass, View target, Config config) {
         this.host = host;
         this.target = target;
+        this.glassHost = new GlassHost(host, target, glass);
         this.config = config;
         this.node = new RenderNode("AndroidLiquidGlassView");
-        this.liquidShader = loadAgsl(target.getResources(), R.raw.liquidglass_effect);
-
-        lastCornerRadius = Float.NaN;
-        lastEccentricFactor = Float.NaN;
-        lastRefractionHeight = Float.NaN;
-        lastRefractionAmount = Float.NaN;
-        lastContrast = Float.NaN;
-        lastWhitePoint = Float.NaN;
-        lastChromaMultiplier = Float.NaN;
-        lastSigma = Float.NaN;
-        lastBlurLevel = Float.NaN;
-        lastChromaticAberration = Float.NaN;
-        lastDepthEffect = Float.NaN;
-        lastTintRed = Float.NaN;
-        lastTintGreen = Float.NaN;
-        lastTintBlue = Float.NaN;
-        lastTintAlpha = Float.NaN;
+        this.node.setClipToBounds(true);
+        this.contentNode = new RenderNode("AndroidLiquidGlassView:content");
+        String traceName = GlassTrace.nameOf("LiquidGlass", glass);
+        this.tracePreDraw = traceName + ".onPreDraw";
+        this.traceRecord = traceName + ".record";
+        this.traceEffect = traceName + ".applyRenderEffect";
+        this.traceDraw = traceName + ".draw";
+        this.traceMotion = traceName + ".motion";
+        this.traceEffectCount = traceName + ".effectRebuilds";
+        this.programVariant = ShaderCache.selectVariant(config);
+        this.program = ShaderCache.getProgram(target.getResources(), R.raw.liquidglass_effect, programVariant);
+        this.liquidShader = program.shader;
 
         host.post(this::applyRenderEffect);
     }
 
     @Override
     public void onSizeChanged(int w, int h) {
+        // Config carries the new size, the effect and the recording follow on the next frame
         node.setPosition(0, 0, w, h);
-        record();
-        applyRenderEffect();
+        needsUpdate = true;
+    }
+
+    @Override
+    public void setQualityTier(int tier) {
+        governorTier = tier;
+        applyQualityTier(tier);
+    }
+
+    @Override
+    public void setMotionQualityTier(int tier) {
+        motionTier = tier;
+    }
+
+    @Override
+    public void setBackdropFrozen(boolean frozen) {
+        this.frozen = frozen;
+        if (!frozen) host.invalidate();
+    }
+
+    @Override
+    public void setMetrics(@Nullable LiquidGlassMetrics metrics) {
+        this.metrics = metrics;
+        if (backdrop != null) seenGeneration = backdrop.getGeneration();
+    }
+
+    private void applyQualityTier(int tier) {
+        if (qualityTier == tier) return;
+        qualityTier = tier;
+        // The tier feeds the dispersion quality uniform, the rest only changes the effects
+        uniformDirty |= Config.DIRTY_DISPERSION_QUALITY;
+        needsUpdate = true;
+    }
+
+    /**
+     * Drop to the motion tier while the glass moves or anything in the window scrolls,
+     * and come back on the first frame where neither happened.
+     */
+    private void updateMotion() {
+        boolean moving = scrolled;
+        scrolled = false;
+        if (motionTier != QualityGovernor.TIER_HIGH) {
+            GlassHost g = glassHost;
+            g.updateOffset();
+            moving |= lastDx != Integer.MIN_VALUE && (g.offsetX != lastDx || g.offsetY != lastDy);
+            lastDx = g.offsetX;
+            lastDy = g.offsetY;
+        } else {
+            moving = false;
+        }
+
+        if (moving != inMotion) {
+            inMotion = moving;
+            if (moving) GlassTrace.beginAsync(traceMotion, System.identityHashCode(this));
+            else GlassTrace.endAsync(traceMotion, System.identityHashCode(this));
+        }
+        if (moving) {
+            // Nothing else may draw once the motion stops, so ask for the idle frame
+            host.postInvalidateOnAnimation();
+            applyQualityTier(Math.max(governorTier, motionTier));
+        } else {
+            applyQualityTier(governorTier);
+        }
     }
 
     @Override
     public void onPreDraw() {
-        record();
-
-        float cornerRadius = config.CORNER_RADIUS_PX;
-        float eccentricFactor = config.ECCENTRIC_FACTOR;
-        float refractionHeight = config.REFRACTION_HEIGHT;
-        float refractionAmount = config.REFRACTION_OFFSET;
-        float contrast = config.CONTRAST;
-        float whitePoint = config.WHITE_POINT;
-        float chromaMultiplier = config.CHROMA_MULTIPLIER;
-        float blurLevel = config.BLUR_RADIUS;
-        float chromaticAberration = config.DISPERSION;
-        float depthEffect = config.DEPTH_EFFECT;
-        float tintRed = config.TINT_COLOR_RED;
-        float tintGreen = config.TINT_COLOR_GREEN;
-        float tintBlue = config.TINT_COLOR_BLUE;
-        float tintAlpha = config.TINT_ALPHA;
-
-        boolean paramsChanged =
-                lastCornerRadius != cornerRadius ||
-                        lastEccentricFactor != eccentricFactor ||
-                        lastRefractionHeight != refractionHeight ||
-                        lastRefractionAmount != refractionAmount ||
-                        lastContrast != contrast ||
-                        lastWhitePoint != whitePoint ||
-                        lastChromaMultiplier != chromaMultiplier ||
-                        lastBlurLevel != blurLevel ||
-                        lastChromaticAberration != chromaticAberration ||
-                        lastDepthEffect != depthEffect ||
-                        lastTintRed != tintRed ||
-                        lastTintGreen != tintGreen ||
-                        lastTintBlue != tintBlue ||
-                        lastTintAlpha != tintAlpha ||
-                        needsUpdate;
-
-        if (paramsChanged) {
-            lastCornerRadius = cornerRadius;
-            lastEccentricFactor = eccentricFactor;
-            lastRefractionHeight = refractionHeight;
-            lastRefractionAmount = refractionAmount;
-            lastContrast = contrast;
-            lastWhitePoint = whitePoint;
-            lastChromaMultiplier = chromaMultiplier;
-            lastBlurLevel = blurLevel;
-            lastChromaticAberration = chromaticAberration;
-            lastDepthEffect = depthEffect;
-            lastTintRed = tintRed;
-            lastTintGreen = tintGreen;
-            lastTintBlue = tintBlue;
-            lastTintAlpha = tintAlpha;
-            needsUpdate = false;
-            applyRenderEffect();
-        }
-    }
-
-    private void record() {
-        int w = target.getWidth(), h = target.getHeight();
-        if (w == 0 || h == 0) return;
-
-        Canvas rec = node.beginRecording(w, h);
-        target.getLocationInWindow(tp);
-        host.getLocationInWindow(hp);
-        rec.translate(-(hp[0] - tp[0]), -(hp[1] - tp[1]));
-        target.draw(rec);
-        node.endRecording();
+        boolean traced = GlassTrace.begin(tracePreDraw);
+        try {
+            // Nothing to do while nobody can see the glass, the backdrop skips it too
+            if (!glassHost.isVisibleOnScreen()) {
+                lastDx = lastDy = Integer.MIN_VALUE;
+                return;
+            }
+            updateMotion();
+            int version = config.getVersion();
+            if (version != lastVersion || needsUpdate) {
+                lastVersion = version;
+                uniformDirty |= config.consumeDirty();
+                needsUpdate = false;
+                applyRenderEffect();
+            }
+
+            LiquidGlassMetrics m = metrics;
+            if (m == null) {
+                record();
+                return;
+            }
+            long start = System.nanoTime();
+            boolean recorded = record();
+            if (recorded) m.onRecord(System.nanoTime() - start);
+            reportFrame(m, recorded);
+        } finally {
+            GlassTrace.end(traced);
+        }
+    }
+
+    private void reportFrame(LiquidGlassMetrics m, boolean recorded) {
+        boolean backdropRecorded = backdrop != null && backdrop.getGeneration() != seenGeneration;
+        if (backdropRecorded) {
+            seenGeneration = backdrop.getGeneration();
+            m.onBackdropRecord(backdrop.getLastRecordNanos(), backdrop.getRecordedArea());
+        }
+        if (recorded || backdropRecorded) {
+            long displayLists = node.computeApproximateMemoryUsage() + contentNode.computeApproximateMemoryUsage();
+            if (backdrop != null) displayLists += backdrop.getNode().computeApproximateMemoryUsage();
+            // Each node with an effect renders into an offscreen layer of its own size
+            long layers = 4L * node.getWidth() * node.getHeight();
+            if (contentHasEffect) layers += 4L * contentNode.getWidth() * contentNode.getHeight();
+            if (displacementMap != null) layers += displacementMap.byteCount;
+            if (backdrop != null) layers += backdrop.getSnapshotBytes();
+            m.onMemory(displayLists, layers);
+        }
+        m.onFrame(!recorded && !backdropRecorded);
+    }
+
+    /**
+     * @return false if the recording was still up to date
+     */
+    private boolean record() {
+        boolean traced = GlassTrace.begin(traceRecord);
+        try {
+            int w = host.getWidth(), h = host.getHeight();
+            if (w == 0 || h == 0 || target.getWidth() == 0 || target.getHeight() == 0) return false;
+            if (backdrop == null) {
+                acquireBackdrop();
+                recordedDx = Integer.MIN_VALUE;
+            }
+
+            int scale = captureScale;
+            int cw = (w + scale - 1) / scale, ch = (h + scale - 1) / scale;
+            if (contentNode.getWidth() != cw || contentNode.getHeight() != ch) {
+                contentNode.setPosition(0, 0, cw, ch);
+                recordedScale = 0;
+            }
+
+            // The backdrop holds the source's content unscrolled, its scroll is applied here
+            glassHost.updateOffset();
+            int dx = glassHost.offsetX + target.getScrollX(), dy = glassHost.offsetY + target.getScrollY();
+            if (dx == recordedDx && dy == recordedDy && scale == recordedScale && node.hasDisplayList()) return false;
+
+            // The shared backdrop node is referenced, not copied, so only the offset needs re-recording
+            Canvas rec = contentNode.beginRecording(cw, ch);
+            if (scale > 1) rec.scale(1f / scale, 1f / scale);
+            rec.translate(-dx, -dy);
+            rec.drawRenderNode(backdrop.getNode());
+            contentNode.endRecording();
+
+            // Upscaled back to full size before the refraction pass
+            rec = node.beginRecording(w, h);
+            if (scale > 1) rec.scale(scale, scale);
+            rec.drawRenderNode(contentNode);
+            node.endRecording();
+
+            recordedDx = dx;
+            recordedDy = dy;
+            recordedScale = scale;
+            return true;
+        } finally {
+            GlassTrace.end(traced);
+        }
+    }
+
+    private void acquireBackdrop() {
+        backdrop = Backdrop.acquire(target, this, snapshot);
+        target.getViewTreeObserver().addOnScrollChangedListener(scrollListener);
+        GlassTrace.onInstanceCreated();
+    }
+
+    @Override
+    public boolean getSampleBounds(Rect outBounds) {
+        int w = host.getWidth(), h = host.getHeight();
+        if (w == 0 || h == 0 || !glassHost.isVisibleOnScreen()) return false;
+
+        GlassHost g = glassHost;
+        g.updateOffset();
+        // Refracted and dispersed taps land at most |offset| * (1 + dispersion) away,
+        // and the blur kernel reaches about three sigma further.
+        int margin = (int) Math.ceil(Math.abs(config.REFRACTION_OFFSET) * (1f + Math.abs(config.DISPERSION))
+                + 3f * Math.max(0f, config.BLUR_RADIUS));
+        outBounds.set(g.offsetX - margin, g.offsetY - margin, g.offsetX + w + margin, g.offsetY + h + margin);
+        return true;
+    }
+
+    @Override
+    public int getRefreshInterval() {
+        return glassHost.getRefreshInterval(config, frozen, qualityTier);
+    }
+
+    @Override
+    public long getRefreshPeriodMillis() {
+        return glassHost.getRefreshPeriodMillis(config);
+    }
+
+    @Override
+    public void refreshBackdrop(long durationMs) {
+        glassHost.startBurst(durationMs);
+        if (backdrop != null) backdrop.invalidate();
+        host.invalidate();
+    }
+
+    @Override
+    public boolean isTimingRecords() {
+        return metrics != null;
+    }
+
+    @Override
+    public View getGlassView() {
+        return glassHost.glass;
     }
 
     @Override
     public void draw(Canvas canvas) {
-        if (!canvas.isHardwareAccelerated()) return;
-        canvas.drawRenderNode(node);
+        boolean traced = GlassTrace.begin(traceDraw);
+        try {
+            if (!canvas.isHardwareAccelerated()) return;
+            canvas.drawRenderNode(node);
+        } finally {
+            GlassTrace.end(traced);
+        }
+    }
+
+    @Override
+    public void setSnapshotMode(boolean snapshot) {
+        if (this.snapshot == snapshot) return;
+        this.snapshot = snapshot;
+        // The other kind of backdrop is picked up by the next recording
+        if (backdrop != null) {
+            releaseBackdrop();
+            host.invalidate();
+        }
+    }
+
+    private void releaseBackdrop() {
+        backdrop.release(this);
+        backdrop = null;
+        ViewTreeObserver observer = target.getViewTreeObserver();
+        if (observer.isAlive()) observer.removeOnScrollChangedListener(scrollListener);
+        GlassTrace.onInstanceDisposed();
+    }
+
+    @Override
+    public void dispose() {
+        if (backdrop != null) releaseBackdrop();
+        if (inMotion) {
+            inMotion = false;
+            GlassTrace.endAsync(traceMotion, System.identityHashCode(this));
+        }
+        lastDx = lastDy = Integer.MIN_VALUE;
+        if (displacementMap != null) {
+            displacementMap = null;
+            DisplacementMap.release();
+        }
+        // The effects hold the map and the blur layers, they are rebuilt if the glass comes back
+        node.setRenderEffect(null);
+        contentNode.setRenderEffect(null);
+        needsUpdate = true;
+        node.discardDisplayList();
+        contentNode.discardDisplayList();
     }
 
     private void applyRenderEffect() {
-        int width = target.getWidth();
-        int height = target.getHeight();
-        if (width == 0 || height == 0) return;
-
-        float cornerRadiusPx = config.CORNER_RADIUS_PX;
-        float refractionHeight = config.REFRACTION_HEIGHT;
-        float refractionAmount = config.REFRACTION_OFFSET;
-        float contrast = config.CONTRAST;
-        float whitePoint = config.WHITE_POINT;
-        float chromaMultiplier = config.CHROMA_MULTIPLIER;
-        float blurLevel = Math.max(0f, config.BLUR_RADIUS);
-        float chromaticAberration = config.DISPERSION;
-        float depthEffect = config.DEPTH_EFFECT;
-        float tintRed = config.TINT_COLOR_RED;
-        float tintGreen = config.TINT_COLOR_GREEN;
-        float tintBlue = config.TINT_COLOR_BLUE;
-        float tintAlpha = config.TINT_ALPHA;
-        float[] size = new float[]{config.WIDTH, config.HEIGHT};
-        float[] offset = new float[]{0f, 0f};
-        float[] cornerRadii = new float[]{
-                cornerRadiusPx, cornerRadiusPx, cornerRadiusPx, cornerRadiusPx
-        };
-
-        RenderEffect contentEffect = null;
-        if (blurLevel > 0.01f) {
-            long now = System.currentTimeMillis();
-            if (cachedBlurEffect == null || Math.abs(blurLevel - lastSigma) > 0.3f || now - lastBlurUpdateTime > 120) {
-                try {
-                    contentEffect = RenderEffect.createBlurEffect(blurLevel, blurLevel, Shader.TileMode.CLAMP);
-                    cachedBlurEffect = contentEffect;
-                    lastSigma = blurLevel;
-                    lastBlurUpdateTime = now;
-                } catch (Exception e) {
-                    contentEffect = cachedBlurEffect;
-                }
-            } else {
-                contentEffect = cachedBlurEffect;
+        boolean traced = GlassTrace.begin(traceEffect);
+        try {
+            int width = target.getWidth();
+            int height = target.getHeight();
+            if (width == 0 || height == 0) return;
+
+            int tier = qualityTier;
+            float blurLevel = Math.min(Math.max(0f, config.BLUR_RADIUS), QualityTiers.maxBlurSigma(tier));
+            captureScale = Math.max(GlassHost.resolveCaptureScale(config.CAPTURE_SCALE, blurLevel), QualityTiers.minCaptureScale(tier));
+
+            // Programs only change when a feature is switched on or off, not when a value moves
+            int variant = ShaderCache.selectVariant(config);
+            DisplacementMap map = resolveDisplacementMap(variant);
+            if (map != null) variant |= ShaderCache.VARIANT_BAKED;
+            if (variant != programVariant) {
+                program = ShaderCache.getProgram(target.getResources(), R.raw.liquidglass_effect, variant);
+                liquidShader = program.shader;
+                programVariant = variant;
+                uniformDirty = Config.DIRTY_ALL;
             }
-        }
 
-        liquidShader.setFloatUniform("size", size);
-        liquidShader.setFloatUniform("offset", offset);
-        liquidShader.setFloatUniform("cornerRadii", cornerRadii);
-        liquidShader.setFloatUniform("refractionHeight", refractionHeight);
-        liquidShader.setFloatUniform("refractionAmount", refractionAmount);
-        liquidShader.setFloatUniform("depthEffect", depthEffect);
-        liquidShader.setFloatUniform("chromaticAberration", chromaticAberration);
-        liquidShader.setFloatUniform("contrast", contrast);
-        liquidShader.setFloatUniform("whitePoint", whitePoint);
-        liquidShader.setFloatUniform("chromaMultiplier", chromaMultiplier);
-        liquidShader.setFloatUniform("tintColor", new float[]{tintRed, tintGreen, tintBlue});
-        liquidShader.setFloatUniform("tintAlpha", tintAlpha);
+            EffectCache.Key key = effectKey;
+            key.reset();
+            key.put(variant);
+            key.put(captureScale);
+            key.put(config.WIDTH);
+            key.put(config.HEIGHT);
+            float cornerRadiusPx = key.put(config.CORNER_RADIUS_PX, EffectCache.PX_STEPS);
+            float refractionHeight = key.put(config.REFRACTION_HEIGHT, EffectCache.PX_STEPS);
+            float refractionAmount = key.put(config.REFRACTION_OFFSET, EffectCache.PX_STEPS);
+            float contrast = key.put(config.CONTRAST, EffectCache.FACTOR_STEPS);
+            float whitePoint = key.put(config.WHITE_POINT, EffectCache.FACTOR_STEPS);
+            float chromaMultiplier = key.put(config.CHROMA_MULTIPLIER, EffectCache.FACTOR_STEPS);
+            float chromaticAberration = key.put(config.DISPERSION, EffectCache.FACTOR_STEPS);
+            // The displacement and dispersion intensity both peak at 1, so this is the widest fringe
+            int dispersionQuality = QualityTiers.dispersionQuality(tier, config.DISPERSION_QUALITY,
+                    refractionAmount * chromaticAberration);
+            key.put(dispersionQuality);
+            float depthEffect = key.put(config.DEPTH_EFFECT, EffectCache.FACTOR_STEPS);
+            float tintRed = key.put(config.TINT_COLOR_RED, EffectCache.COLOR_STEPS);
+            float tintGreen = key.put(config.TINT_COLOR_GREEN, EffectCache.COLOR_STEPS);
+            float tintBlue = key.put(config.TINT_COLOR_BLUE, EffectCache.COLOR_STEPS);
+            float tintAlpha = key.put(config.TINT_ALPHA, EffectCache.COLOR_STEPS);
+            // The blur runs on the downsampled capture, so sigma shrinks with it
+            int blurStep = BlurLadder.step(blurLevel / captureScale);
+            key.put(blurStep);
 
-        RenderEffect shaderEffect = RenderEffect.createRuntimeShaderEffect(liquidShader, "content");
-        RenderEffect finalEffect = (contentEffect != null)
-                ? RenderEffect.createChainEffect(shaderEffect, contentEffect)
-                : shaderEffect;
+            GlassTrace.setCounter(traceEffectCount, ++effectRebuilds);
+            EffectCache.Entry entry = EffectCache.get(key);
+            if (metrics != null) metrics.onEffectUpdate(entry != null);
+            if (entry == null) {
+                entry = createEffects(cornerRadiusPx, refractionHeight, refractionAmount, contrast, whitePoint,
+                        chromaMultiplier, chromaticAberration, dispersionQuality, depthEffect, tintRed, tintGreen, tintBlue, tintAlpha, blurStep, map);
+                EffectCache.put(key, entry);
+            }
 
-        node.setRenderEffect(finalEffect);
+            contentHasEffect = entry.contentEffect != null;
+            contentNode.setRenderEffect(entry.contentEffect);
+            node.setRenderEffect(entry.nodeEffect);
+        } finally {
+            GlassTrace.end(traced);
+        }
     }
 
-    private RuntimeShader loadAgsl(Resources resources, int resourceId) {
-        @Language("AGSL")
-        String shaderCode = loadRaw(resources, resourceId);
-        return new RuntimeShader(shaderCode);
+    /**
+     * The baked map for the current geometry if there is one. Otherwise it is baked in the
+     * background, together with the program that reads it, and the glass computes the geometry
+     * per pixel until then. A shape that keeps changing never waits on more than one bake.
+     */
+    @Nullable
+    private DisplacementMap resolveDisplacementMap(int variant) {
+        DisplacementMap map = displacementMap;
+        if (map != null && map.key.matches(config)) return map;
+        // Without a refraction band every pixel is interior, the unbaked variant skips them as cheaply
+        if (config.WIDTH <= 0 || config.HEIGHT <= 0 || !(config.REFRACTION_HEIGHT > 0f)) return null;
+
+        DisplacementMap.Key key = DisplacementMap.Key.of(config);
+        map = DisplacementMap.peek(key);
+        if (map != null) {
+            if (displacementMap == null) DisplacementMap.retain(target.getContext());
+            displacementMap = map;
+            mapDirty = true;
+            return map;
+        }
+        if (!baking) {
+            baking = true;
+            Resources resources = target.getResources();
+            GlassExecutors.background().execute(() -> {
+                DisplacementMap.get(key);
+                ShaderCache.getProgram(resources, R.raw.liquidglass_effect, variant | ShaderCache.VARIANT_BAKED);
+                GlassExecutors.main().post(() -> {
+                    baking = false;
+                    needsUpdate = true;
+                    host.invalidate();
+                });
+            });
+        }
+        return null;
     }
 
-    private String loadRaw(Resources resources, int resourceId) {
-        try (InputStream inputStream = resources.openRawResource(resourceId);
-             BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
-            StringBuilder sb = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                sb.append(line).append('\n');
-            }
-            return sb.toString();
-        } catch (IOException e) {
-            throw new RuntimeException("Error loading shader: " + resourceId, e);
+    private EffectCache.Entry createEffects(float cornerRadiusPx, float refractionHeight, float refractionAmount,
+                                            float contrast, float whitePoint, float chromaMultiplier,
+                                            float chromaticAberration, int dispersionQuality, float depthEffect,
+                                            float tintRed, float tintGreen, float tintBlue, float tintAlpha,
+                                            int blurStep, @Nullable DisplacementMap map) {
+        if (metrics != null && blurStep != BlurLadder.NONE) metrics.onBlurLookup(BlurLadder.isCached(blurStep));
+        RenderEffect contentEffect = BlurLadder.effect(blurStep);
+
+        // Another glass sharing the program may have left its own uniforms behind
+        int upload = program.uniformOwner == uniformToken ? uniformDirty : Config.DIRTY_ALL;
+        program.uniformOwner = uniformToken;
+        uniformDirty = 0;
+
+        if ((upload & Config.DIRTY_SIZE) != 0) {
+            size[0] = config.WIDTH;
+            size[1] = config.HEIGHT;
+            liquidShader.setFloatUniform("size", size);
+            liquidShader.setFloatUniform("offset", offset);
+        }
+        if ((upload & Config.DIRTY_CORNER_RADIUS) != 0) {
+            cornerRadii[0] = cornerRadii[1] = cornerRadii[2] = cornerRadii[3] = cornerRadiusPx;
+            liquidShader.setFloatUniform("cornerRadii", cornerRadii);
+        }
+        if ((upload & Config.DIRTY_REFRACTION_HEIGHT) != 0) {
+            liquidShader.setFloatUniform("refractionHeight", refractionHeight);
+        }
+        if ((upload & Config.DIRTY_REFRACTION_OFFSET) != 0) {
+            liquidShader.setFloatUniform("refractionAmount", refractionAmount);
+        }
+        if ((upload & Config.DIRTY_DEPTH_EFFECT) != 0) {
+            liquidShader.setFloatUniform("depthEffect", depthEffect);
+        }
+        if ((upload & Config.DIRTY_DISPERSION) != 0) {
+            liquidShader.setFloatUniform("chromaticAberration", chromaticAberration);
         }
+        if ((upload & (Config.DIRTY_DISPERSION_QUALITY | Config.DIRTY_DISPERSION | Config.DIRTY_REFRACTION_OFFSET)) != 0) {
+            liquidShader.setIntUniform("dispersionQuality", dispersionQuality);
+        }
+        if ((upload & Config.DIRTY_CONTRAST) != 0) {
+            liquidShader.setFloatUniform("contrast", contrast);
+        }
+        if ((upload & Config.DIRTY_WHITE_POINT) != 0) {
+            liquidShader.setFloatUniform("whitePoint", whitePoint);
+        }
+        if ((upload & Config.DIRTY_CHROMA_MULTIPLIER) != 0) {
+            liquidShader.setFloatUniform("chromaMultiplier", chromaMultiplier);
+        }
+        if ((upload & Config.DIRTY_TINT) != 0) {
+            tintColor[0] = tintRed;
+            tintColor[1] = tintGreen;
+            tintColor[2] = tintBlue;
+            liquidShader.setFloatUniform("tintColor", tintColor);
+            liquidShader.setFloatUniform("tintAlpha", tintAlpha);
+        }
+
+        if (map != null && (mapDirty || upload == Config.DIRTY_ALL)) {
+            // Sampled as raw data, so the displacement is not colour managed
+            liquidShader.setInputBuffer("displacementMap", map.shader);
+            liquidShader.setFloatUniform("mapScale", DisplacementMap.mapScale(), DisplacementMap.mapScale());
+            mapDirty = false;
+        }
+
+        RenderEffect shaderEffect = RenderEffect.createRuntimeShaderEffect(liquidShader, "content");
+        if (captureScale > 1) return new EffectCache.Entry(shaderEffect, contentEffect);
+
+        RenderEffect finalEffect = (contentEffect != null)
+                ? RenderEffect.createChainEffect(shaderEffect, contentEffect)
+                : shaderEffect;
+        return new EffectCache.Entry(finalEffect, null);
     }
-}
\ No newline at end of file
+}
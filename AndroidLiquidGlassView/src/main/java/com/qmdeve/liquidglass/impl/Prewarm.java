@@ -0,0 +1,47 @@
+/**
+ * Copyright 2025 QmDeve
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author QmDeve
+ * @github https://github.com/QmDeve
+ * @since 2025-11-01
+ */
+
+
+package com.qmdeve.liquidglass.impl;
+
+import android.content.res.Resources;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.RestrictTo;
+
+import com.qmdeve.liquidglass.R;
+
+/**
+ * Entry point for {@code LiquidGlass.prewarm()}, keeps the shader cache itself package-private
+ */
+@RestrictTo(RestrictTo.Scope.LIBRARY)
+public final class Prewarm {
+
+    private Prewarm() {
+    }
+
+    public static void start(Resources resources, @Nullable Runnable onComplete) {
+        ShaderCache.prewarm(resources, R.raw.liquidglass_effect, onComplete);
+    }
+
+    public static boolean isDone() {
+        return ShaderCache.isPrewarmed();
+    }
+}
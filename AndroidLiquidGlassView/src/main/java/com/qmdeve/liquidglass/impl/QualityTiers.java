@@ -0,0 +1,103 @@
+/**
+ * Copyright 2025 QmDeve
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author QmDeve
+ * @github https://github.com/QmDeve
+ * @since 2025-11-01
+ */
+
+
+package com.qmdeve.liquidglass.impl;
+
+import com.qmdeve.liquidglass.Config;
+import com.qmdeve.liquidglass.QualityGovernor;
+
+/**
+ * What each {@link QualityGovernor} tier gives up. A tier only ever lowers the configured
+ * quality, it never raises it.
+ */
+final class QualityTiers {
+
+    private QualityTiers() {
+    }
+
+    /**
+     * AUTO is resolved for the whole glass, so the tap count never changes across it
+     */
+    static int dispersionQuality(int tier, int configured, float maxDispersionPx) {
+        if (configured == Config.DISPERSION_QUALITY_AUTO) configured = autoDispersionQuality(maxDispersionPx);
+        switch (tier) {
+            case QualityGovernor.TIER_HIGH:
+                return configured;
+            case QualityGovernor.TIER_MEDIUM:
+                return configured == Config.DISPERSION_QUALITY_LOW ? configured : Config.DISPERSION_QUALITY_MEDIUM;
+            default:
+                return Config.DISPERSION_QUALITY_LOW;
+        }
+    }
+
+    /**
+     * Fewer taps when the colour fringes are less than a few pixels apart
+     */
+    static int autoDispersionQuality(float maxDispersionPx) {
+        float px = Math.abs(maxDispersionPx);
+        return px < 1f ? Config.DISPERSION_QUALITY_LOW
+                : (px < 4f ? Config.DISPERSION_QUALITY_MEDIUM : Config.DISPERSION_QUALITY_HIGH);
+    }
+
+    /**
+     * Smallest backdrop capture scale allowed at this tier
+     */
+    static int minCaptureScale(int tier) {
+        switch (tier) {
+            case QualityGovernor.TIER_LOW:
+                return 2;
+            case QualityGovernor.TIER_MINIMUM:
+                return 4;
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * Largest blur sigma allowed at this tier, in pixels
+     */
+    static float maxBlurSigma(int tier) {
+        switch (tier) {
+            case QualityGovernor.TIER_MEDIUM:
+                return 32f;
+            case QualityGovernor.TIER_LOW:
+                return 20f;
+            case QualityGovernor.TIER_MINIMUM:
+                return 12f;
+            default:
+                return Float.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Frames between two recordings of a changing backdrop
+     */
+    static int refreshInterval(int tier) {
+        switch (tier) {
+            case QualityGovernor.TIER_LOW:
+                return 2;
+            case QualityGovernor.TIER_MINIMUM:
+                return 3;
+            default:
+                return 1;
+        }
+    }
+}
@@ -0,0 +1,379 @@
+/**
+ * Copyright 2025 QmDeve
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author QmDeve
+ * @github https://github.com/QmDeve
+ * @since 2025-11-01
+ */
+
+
+package com.qmdeve.liquidglass.impl;
+
+/**
+ * Pure Java port of liquidglass_effect.agsl, used where RuntimeShader is not available.
+ * No Android types are used, so it runs as is on the JVM.
+ * <p>
+ * All lengths are in buffer pixels, i.e. already divided by the capture scale. The source is
+ * packed premultiplied ARGB, see {@link #premultiply(int[], int, int)}, so transparent pixels
+ * blur and filter like they do on the GPU. The output is unpremultiplied, as Bitmap.setPixels
+ * expects.
+ * {@link #run(int[], int[], int, int)} only reads the parameters, so separate row ranges
+ * can be processed on separate threads.
+ */
+final class RefractionKernel {
+
+    // Same values as Config.DISPERSION_QUALITY_*
+    static final int QUALITY_AUTO = 0, QUALITY_HIGH = 1, QUALITY_MEDIUM = 2, QUALITY_LOW = 3;
+
+    private static final float[] TO_LINEAR = new float[256];
+    private static final int FROM_LINEAR_SIZE = 4096;
+    private static final float[] FROM_LINEAR = new float[FROM_LINEAR_SIZE + 1];
+
+    static {
+        for (int i = 0; i < TO_LINEAR.length; i++) {
+            double c = i / 255.0;
+            TO_LINEAR[i] = (float) (c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4));
+        }
+        for (int i = 0; i <= FROM_LINEAR_SIZE; i++) {
+            double l = (double) i / FROM_LINEAR_SIZE;
+            FROM_LINEAR[i] = (float) (l <= 0.0031308 ? l * 12.92 : 1.055 * Math.pow(l, 1 / 2.4) - 0.055);
+        }
+    }
+
+    /**
+     * Output size
+     */
+    int width, height;
+    /**
+     * Size of the glass, the output may be up to a pixel larger after rounding
+     */
+    float glassWidth, glassHeight;
+    /**
+     * Source size, and where the glass origin lies in it
+     */
+    int srcWidth, srcHeight;
+    float srcOffsetX, srcOffsetY;
+
+    float cornerRadius, refractionHeight, refractionAmount, depthEffect = 0.3f;
+    float dispersion;
+    int dispersionQuality = QUALITY_AUTO;
+    float minSmoothRadius = 30f;
+
+    float contrast, whitePoint, chromaMultiplier = 1f;
+    float tintRed, tintGreen, tintBlue, tintAlpha;
+
+    /**
+     * Refract rows [y0, y1) of the output from src into dst
+     */
+    void run(int[] src, int[] dst, int y0, int y1) {
+        float hw = glassWidth * 0.5f, hh = glassHeight * 0.5f;
+        float radius = cornerRadius;
+        float gradRadius = Math.min(Math.max(radius * 1.5f, minSmoothRadius), Math.min(hw, hh));
+        boolean colorFilter = contrast != 0f || whitePoint != 0f || chromaMultiplier != 1f;
+        boolean tint = tintAlpha != 0f;
+        float[] tap = new float[4];
+        float[] color = new float[4];
+        float[] grad = new float[2];
+        int quality = resolveQuality();
+
+        for (int y = y0; y < y1; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                float coordX = x + 0.5f, coordY = y + 0.5f;
+                float cx = coordX - hw, cy = coordY - hh;
+                float sd = sdRoundedRect(cx, cy, hw, hh, radius);
+
+                if (!(refractionHeight > 0f) || -sd >= refractionHeight) {
+                    sample(src, coordX, coordY, color);
+                } else {
+                    sd = Math.min(sd, 0f);
+                    float t = 1f - -sd / refractionHeight;
+                    float d = circleMap(t) * refractionAmount;
+
+                    gradSdRoundedRect(cx, cy, hw, hh, gradRadius, grad);
+                    float len = (float) Math.sqrt(cx * cx + cy * cy);
+                    float gx = grad[0], gy = grad[1];
+                    if (len > 0f) {
+                        gx += depthEffect * cx / len;
+                        gy += depthEffect * cy / len;
+                    }
+                    float glen = (float) Math.sqrt(gx * gx + gy * gy);
+                    if (glen > 0f) {
+                        gx /= glen;
+                        gy /= glen;
+                    }
+
+                    float rx = coordX + d * gx, ry = coordY + d * gy;
+                    float intensity = dispersion * ((cx * cy) / (hw * hh));
+                    float dx = d * gx * intensity, dy = d * gy * intensity;
+                    refract(src, rx, ry, dx, dy, quality, tap, color);
+                }
+
+                if (colorFilter) applyColorFilter(color);
+                if (tint) {
+                    color[1] += (tintRed - color[1]) * tintAlpha;
+                    color[2] += (tintGreen - color[2]) * tintAlpha;
+                    color[3] += (tintBlue - color[3]) * tintAlpha;
+                }
+                dst[row + x] = pack(color);
+            }
+        }
+    }
+
+    /**
+     * One tap count for the whole glass, from its widest fringe when AUTO
+     */
+    private int resolveQuality() {
+        if (dispersion == 0f) return QUALITY_LOW;
+        if (dispersionQuality != QUALITY_AUTO) return dispersionQuality;
+        return QualityTiers.autoDispersionQuality(refractionAmount * dispersion);
+    }
+
+    /**
+     * Dispersed taps along (dx, dy) around (rx, ry), weighted as in the shader
+     */
+    private void refract(int[] src, float rx, float ry, float dx, float dy, int quality, float[] tap, float[] out) {
+        if (quality == QUALITY_LOW) {
+            sample(src, rx, ry, out);
+            return;
+        }
+        if (quality == QUALITY_MEDIUM) {
+            float k = 2f / 3f;
+            sample(src, rx + dx * k, ry + dy * k, tap);
+            float alpha = tap[0];
+            out[1] = tap[1];
+            sample(src, rx, ry, tap);
+            alpha += tap[0];
+            out[2] = tap[2];
+            sample(src, rx - dx * k, ry - dy * k, tap);
+            alpha += tap[0];
+            out[3] = tap[3];
+            out[0] = alpha / 3f;
+            return;
+        }
+
+        float a = 0f, r = 0f, g = 0f, b = 0f;
+        sample(src, rx + dx, ry + dy, tap);
+        r += tap[1] / 3.5f;
+        a += tap[0] / 7f;
+        sample(src, rx + dx * (2f / 3f), ry + dy * (2f / 3f), tap);
+        r += tap[1] / 3.5f;
+        g += tap[2] / 7f;
+        a += tap[0] / 7f;
+        sample(src, rx + dx * (1f / 3f), ry + dy * (1f / 3f), tap);
+        r += tap[1] / 3.5f;
+        g += tap[2] / 3.5f;
+        a += tap[0] / 7f;
+        sample(src, rx, ry, tap);
+        g += tap[2] / 3.5f;
+        a += tap[0] / 7f;
+        sample(src, rx - dx * (1f / 3f), ry - dy * (1f / 3f), tap);
+        g += tap[2] / 3.5f;
+        b += tap[3] / 3f;
+        a += tap[0] / 7f;
+        sample(src, rx - dx * (2f / 3f), ry - dy * (2f / 3f), tap);
+        b += tap[3] / 3f;
+        a += tap[0] / 7f;
+        sample(src, rx - dx, ry - dy, tap);
+        r += tap[1] / 7f;
+        b += tap[3] / 3f;
+        a += tap[0] / 7f;
+        out[0] = a;
+        out[1] = r;
+        out[2] = g;
+        out[3] = b;
+    }
+
+    /**
+     * Bilinear sample at a glass coordinate, clamped to the source edges, as premultiplied
+     * {a, r, g, b} in 0..1
+     */
+    private void sample(int[] src, float x, float y, float[] out) {
+        float px = x + srcOffsetX - 0.5f, py = y + srcOffsetY - 0.5f;
+        int x0 = (int) Math.floor(px), y0 = (int) Math.floor(py);
+        float fx = px - x0, fy = py - y0;
+        int xa = clamp(x0, srcWidth - 1), xb = clamp(x0 + 1, srcWidth - 1);
+        int ya = clamp(y0, srcHeight - 1) * srcWidth, yb = clamp(y0 + 1, srcHeight - 1) * srcWidth;
+
+        int c00 = src[ya + xa], c10 = src[ya + xb], c01 = src[yb + xa], c11 = src[yb + xb];
+        float w00 = (1f - fx) * (1f - fy), w10 = fx * (1f - fy), w01 = (1f - fx) * fy, w11 = fx * fy;
+        for (int i = 0, shift = 24; i < 4; i++, shift -= 8) {
+            out[i] = (((c00 >>> shift) & 0xff) * w00 + ((c10 >>> shift) & 0xff) * w10
+                    + ((c01 >>> shift) & 0xff) * w01 + ((c11 >>> shift) & 0xff) * w11) / 255f;
+        }
+    }
+
+    private void applyColorFilter(float[] c) {
+        // Saturation is adjusted in linear light, as the shader does
+        float lr = toLinear(c[1]), lg = toLinear(c[2]), lb = toLinear(c[3]);
+        float lum = 0.2126f * lr + 0.7152f * lg + 0.0722f * lb;
+        c[1] = fromLinear(lum + (lr - lum) * chromaMultiplier);
+        c[2] = fromLinear(lum + (lg - lum) * chromaMultiplier);
+        c[3] = fromLinear(lum + (lb - lum) * chromaMultiplier);
+
+        float target = whitePoint > 0f ? 1f : 0f;
+        float amount = Math.abs(whitePoint);
+        float gain = 1f + contrast;
+        for (int i = 1; i < 4; i++) {
+            float v = c[i] + (target - c[i]) * amount;
+            c[i] = (v - 0.5f) * gain + 0.5f;
+        }
+    }
+
+    static float sdRoundedRect(float cx, float cy, float hw, float hh, float radius) {
+        float ccx = Math.abs(cx) - (hw - radius), ccy = Math.abs(cy) - (hh - radius);
+        float mx = Math.max(ccx, 0f), my = Math.max(ccy, 0f);
+        float outside = (float) Math.sqrt(mx * mx + my * my) - radius;
+        float inside = Math.min(Math.max(ccx, ccy), 0f);
+        return outside + inside;
+    }
+
+    static void gradSdRoundedRect(float cx, float cy, float hw, float hh, float radius, float[] out) {
+        float ccx = Math.abs(cx) - (hw - radius), ccy = Math.abs(cy) - (hh - radius);
+        if (ccx >= 0f || ccy >= 0f) {
+            float mx = Math.max(ccx, 0f), my = Math.max(ccy, 0f);
+            float len = (float) Math.sqrt(mx * mx + my * my);
+            out[0] = len > 0f ? Math.signum(cx) * mx / len : 0f;
+            out[1] = len > 0f ? Math.signum(cy) * my / len : 0f;
+        } else {
+            float gradX = ccx >= ccy ? 1f : 0f;
+            out[0] = Math.signum(cx) * gradX;
+            out[1] = Math.signum(cy) * (1f - gradX);
+        }
+    }
+
+    static float circleMap(float x) {
+        return 1f - (float) Math.sqrt(Math.max(0f, 1f - x * x));
+    }
+
+    private static float toLinear(float c) {
+        return TO_LINEAR[Math.round(clamp01(c) * 255f)];
+    }
+
+    private static float fromLinear(float l) {
+        return FROM_LINEAR[Math.round(clamp01(l) * FROM_LINEAR_SIZE)];
+    }
+
+    /**
+     * Unpremultiply and pack {a, r, g, b}
+     */
+    private static int pack(float[] c) {
+        float a = clamp01(c[0]);
+        if (a <= 0f) return 0;
+        return (Math.round(a * 255f) << 24)
+                | (Math.round(clamp01(c[1] / a) * 255f) << 16)
+                | (Math.round(clamp01(c[2] / a) * 255f) << 8)
+                | Math.round(clamp01(c[3] / a) * 255f);
+    }
+
+    /**
+     * Premultiply pixels [from, to) in place, Bitmap.getPixels returns them unpremultiplied
+     */
+    static void premultiply(int[] pixels, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int c = pixels[i];
+            int a = c >>> 24;
+            if (a == 255) continue;
+            if (a == 0) {
+                pixels[i] = 0;
+                continue;
+            }
+            int red = (((c >> 16) & 0xff) * a + 127) / 255;
+            int green = (((c >> 8) & 0xff) * a + 127) / 255;
+            int blue = ((c & 0xff) * a + 127) / 255;
+            pixels[i] = (a << 24) | (red << 16) | (green << 8) | blue;
+        }
+    }
+
+    private static float clamp01(float v) {
+        return v < 0f ? 0f : (v > 1f ? 1f : v);
+    }
+
+    private static int clamp(int v, int max) {
+        return v < 0 ? 0 : (v > max ? max : v);
+    }
+
+    /**
+     * Radii of three box blurs that together approximate a gaussian of the given sigma
+     *
+     * @return null if there is nothing to blur
+     */
+    static int[] boxBlurRadii(float sigma) {
+        if (!(sigma >= 0.5f)) return null;
+        int n = 3;
+        double wIdeal = Math.sqrt(12.0 * sigma * sigma / n + 1);
+        int wl = (int) Math.floor(wIdeal);
+        if (wl % 2 == 0) wl--;
+        int wu = wl + 2;
+        double mIdeal = (12.0 * sigma * sigma - n * wl * wl - 4.0 * n * wl - 3.0 * n) / (-4.0 * wl - 4);
+        long m = Math.round(mIdeal);
+        int[] radii = new int[n];
+        for (int i = 0; i < n; i++) radii[i] = ((i < m ? wl : wu) - 1) / 2;
+        return radii;
+    }
+
+    /**
+     * Horizontal box blur of rows [y0, y1), edges clamped
+     */
+    static void boxBlurRows(int[] in, int[] out, int w, int h, int radius, int y0, int y1) {
+        int size = radius * 2 + 1;
+        for (int y = y0; y < y1; y++) {
+            int row = y * w;
+            int a = 0, r = 0, g = 0, b = 0;
+            for (int i = -radius; i <= radius; i++) {
+                int c = in[row + clamp(i, w - 1)];
+                a += c >>> 24;
+                r += (c >> 16) & 0xff;
+                g += (c >> 8) & 0xff;
+                b += c & 0xff;
+            }
+            for (int x = 0; x < w; x++) {
+                out[row + x] = ((a / size) << 24) | ((r / size) << 16) | ((g / size) << 8) | (b / size);
+                int cOut = in[row + clamp(x - radius, w - 1)];
+                int cIn = in[row + clamp(x + radius + 1, w - 1)];
+                a += (cIn >>> 24) - (cOut >>> 24);
+                r += ((cIn >> 16) & 0xff) - ((cOut >> 16) & 0xff);
+                g += ((cIn >> 8) & 0xff) - ((cOut >> 8) & 0xff);
+                b += (cIn & 0xff) - (cOut & 0xff);
+            }
+        }
+    }
+
+    /**
+     * Vertical box blur of columns [x0, x1), edges clamped
+     */
+    static void boxBlurColumns(int[] in, int[] out, int w, int h, int radius, int x0, int x1) {
+        int size = radius * 2 + 1;
+        for (int x = x0; x < x1; x++) {
+            int a = 0, r = 0, g = 0, b = 0;
+            for (int i = -radius; i <= radius; i++) {
+                int c = in[clamp(i, h - 1) * w + x];
+                a += c >>> 24;
+                r += (c >> 16) & 0xff;
+                g += (c >> 8) & 0xff;
+                b += c & 0xff;
+            }
+            for (int y = 0; y < h; y++) {
+                out[y * w + x] = ((a / size) << 24) | ((r / size) << 16) | ((g / size) << 8) | (b / size);
+                int cOut = in[clamp(y - radius, h - 1) * w + x];
+                int cIn = in[clamp(y + radius + 1, h - 1) * w + x];
+                a += (cIn >>> 24) - (cOut >>> 24);
+                r += ((cIn >> 16) & 0xff) - ((cOut >> 16) & 0xff);
+                g += ((cIn >> 8) & 0xff) - ((cOut >> 8) & 0xff);
+                b += (cIn & 0xff) - (cOut & 0xff);
+            }
+        }
+    }
+}
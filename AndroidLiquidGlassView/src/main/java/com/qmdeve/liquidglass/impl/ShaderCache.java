@@ -0,0 +1,237 @@
+/**
+ * Copyright 2025 QmDeve
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author QmDeve
+ * @github https://github.com/QmDeve
+ * @since 2025-11-01
+ */
+
+package com.qmdeve.liquidglass.impl;
+
+import android.content.res.Resources;
+import android.graphics.BitmapShader;
+import android.graphics.RuntimeShader;
+import android.os.Build;
+import android.util.LongSparseArray;
+import android.util.SparseArray;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+
+import com.qmdeve.liquidglass.Config;
+
+import org.intellij.lang.annotations.Language;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.regex.Pattern;
+
+/**
+ * Process-wide cache of AGSL sources and compiled {@link RuntimeShader}s.
+ * <p>
+ * A compiled shader is shared by every glass using the same program. Uniforms are set right
+ * before each {@link android.graphics.RenderEffect} is created from it, and the effect keeps
+ * its own copy of them, so sharing is safe as long as that happens on the main thread.
+ */
+final class ShaderCache {
+
+    /**
+     * Variant flags, each one strips a feature the current Config does not use.
+     * The full program is {@link #VARIANT_DEFAULT}.
+     */
+    static final int VARIANT_DEFAULT = 0,
+            VARIANT_NO_DISPERSION = 1,
+            VARIANT_NO_COLOR_FILTER = 1 << 1,
+            VARIANT_NO_TINT = 1 << 2,
+            VARIANT_HALF = 1 << 3,
+            VARIANT_BAKED = 1 << 4;
+
+    /**
+     * Variant a LiquidGlassView starts with, compiled by {@link #prewarm} next to the full program
+     */
+    private static final int VARIANT_COMMON = VARIANT_NO_COLOR_FILTER | VARIANT_NO_TINT | VARIANT_HALF;
+
+    /**
+     * Largest refraction offset, in px, whose displacement is still exact enough in half precision
+     */
+    private static final float HALF_MAX_OFFSET = 512f;
+
+    private static final Pattern HALF_LINE = Pattern.compile("\\bfloat(\\d?)\\b(?=.*// @half)");
+
+    private static final SparseArray<String> SOURCES = new SparseArray<>();
+    private static final LongSparseArray<Program> PROGRAMS = new LongSparseArray<>();
+
+    private static final Object PREWARM_LOCK = new Object();
+    private static final ArrayList<Runnable> PREWARM_CALLBACKS = new ArrayList<>();
+    private static boolean prewarmStarted;
+    private static volatile boolean prewarmed;
+
+    private ShaderCache() {
+    }
+
+    /**
+     * Load and compile the glass shader on a background thread so the first glass does not
+     * pay for it on the main thread. Safe to call any number of times.
+     *
+     * @param onComplete called on the main thread once the shader is ready, may be null
+     */
+    static void prewarm(Resources resources, int resourceId, @Nullable Runnable onComplete) {
+        synchronized (PREWARM_LOCK) {
+            if (!prewarmed) {
+                if (onComplete != null) PREWARM_CALLBACKS.add(onComplete);
+                if (prewarmStarted) return;
+                prewarmStarted = true;
+                GlassExecutors.background().execute(() -> runPrewarm(resources, resourceId));
+                return;
+            }
+        }
+        if (onComplete != null) GlassExecutors.main().post(onComplete);
+    }
+
+    static boolean isPrewarmed() {
+        return prewarmed;
+    }
+
+    private static void runPrewarm(Resources resources, int resourceId) {
+        try {
+            getSource(resources, resourceId);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+                getProgram(resources, resourceId, VARIANT_COMMON);
+                getProgram(resources, resourceId, VARIANT_COMMON | VARIANT_BAKED);
+                getProgram(resources, resourceId, VARIANT_DEFAULT);
+            }
+        } finally {
+            ArrayList<Runnable> callbacks;
+            synchronized (PREWARM_LOCK) {
+                prewarmed = true;
+                callbacks = new ArrayList<>(PREWARM_CALLBACKS);
+                PREWARM_CALLBACKS.clear();
+            }
+            for (Runnable callback : callbacks) GlassExecutors.main().post(callback);
+        }
+    }
+
+    static String getSource(Resources resources, int resourceId) {
+        synchronized (SOURCES) {
+            String source = SOURCES.get(resourceId);
+            if (source == null) {
+                source = loadRaw(resources, resourceId);
+                SOURCES.put(resourceId, source);
+            }
+            return source;
+        }
+    }
+
+    @RequiresApi(api = Build.VERSION_CODES.TIRAMISU)
+    static Program getProgram(Resources resources, int resourceId, int variant) {
+        long key = ((long) resourceId << 32) | (variant & 0xffffffffL);
+        synchronized (PROGRAMS) {
+            Program program = PROGRAMS.get(key);
+            if (program == null) {
+                @Language("AGSL")
+                String shaderCode = specialize(getSource(resources, resourceId), variant);
+                program = new Program(new RuntimeShader(shaderCode));
+                PROGRAMS.put(key, program);
+            }
+            return program;
+        }
+    }
+
+    /**
+     * Point the baked programs at an empty map, so the cache does not keep the last real one
+     * alive. Whoever uses a program next uploads all of its uniforms and its own map.
+     */
+    @RequiresApi(api = Build.VERSION_CODES.TIRAMISU)
+    static void releaseDisplacementMaps(BitmapShader empty) {
+        synchronized (PROGRAMS) {
+            for (int i = 0, n = PROGRAMS.size(); i < n; i++) {
+                if ((PROGRAMS.keyAt(i) & VARIANT_BAKED) == 0) continue;
+                Program program = PROGRAMS.valueAt(i);
+                program.shader.setInputBuffer("displacementMap", empty);
+                program.uniformOwner = 0;
+            }
+        }
+    }
+
+    /**
+     * Cheapest variant that renders the config exactly like the full program.
+     * {@link #VARIANT_BAKED} is left to the caller, it depends on a map being ready.
+     */
+    static int selectVariant(Config config) {
+        int variant = VARIANT_DEFAULT;
+        if (config.DISPERSION == 0f) variant |= VARIANT_NO_DISPERSION;
+        if (config.CONTRAST == 0f && config.WHITE_POINT == 0f && config.CHROMA_MULTIPLIER == 1f) {
+            variant |= VARIANT_NO_COLOR_FILTER;
+        }
+        if (config.TINT_ALPHA == 0f) variant |= VARIANT_NO_TINT;
+        if (Math.abs(config.REFRACTION_OFFSET) <= HALF_MAX_OFFSET) variant |= VARIANT_HALF;
+        return variant;
+    }
+
+    /**
+     * Prepend the specialization constants for a variant, the compiler folds away the
+     * branches they disable
+     */
+    static String specialize(String source, int variant) {
+        StringBuilder sb = new StringBuilder(source.length() + 128);
+        sb.append("const bool kDispersion = ").append((variant & VARIANT_NO_DISPERSION) == 0).append(";\n");
+        sb.append("const bool kColorFilter = ").append((variant & VARIANT_NO_COLOR_FILTER) == 0).append(";\n");
+        sb.append("const bool kTint = ").append((variant & VARIANT_NO_TINT) == 0).append(";\n");
+        sb.append("const bool kBaked = ").append((variant & VARIANT_BAKED) != 0).append(";\n");
+        if ((variant & VARIANT_HALF) != 0) {
+            // Only the displacement math is marked, coordinates stay in full precision
+            StringBuilder narrowed = new StringBuilder(source.length());
+            for (String line : source.split("\n", -1)) {
+                narrowed.append(HALF_LINE.matcher(line).replaceAll("half$1")).append('\n');
+            }
+            source = narrowed.toString();
+        }
+        return sb.append(source).toString();
+    }
+
+    /**
+     * A compiled shader shared between glass instances
+     */
+    @RequiresApi(api = Build.VERSION_CODES.TIRAMISU)
+    static final class Program {
+        final RuntimeShader shader;
+        /**
+         * Token of the glass whose uniforms the shader currently holds, anyone else has to upload
+         * all of them. A token rather than the glass, so the cache never keeps a view alive.
+         */
+        int uniformOwner;
+
+        Program(RuntimeShader shader) {
+            this.shader = shader;
+        }
+    }
+
+    private static String loadRaw(Resources resources, int resourceId) {
+        try (InputStream inputStream = resources.openRawResource(resourceId);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
+            StringBuilder sb = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                sb.append(line).append('\n');
+            }
+            return sb.toString();
+        } catch (IOException e) {
+            throw new RuntimeException("Error loading shader: " + resourceId, e);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * Copyright 2025 QmDeve
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author QmDeve
+ * @github https://github.com/QmDeve
+ * @since 2025-11-01
+ */
+
+
+package com.qmdeve.liquidglass.util;
+
+import android.content.res.Resources;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.tracing.Trace;
+
+/**
+ * Trace sections and counters for the glass hot paths, visible in Perfetto / systrace.
+ * Section names are built once per instance, so a disabled trace costs one enabled check.
+ */
+public final class GlassTrace {
+
+    private static final String ACTIVE_COUNTER = "LiquidGlass:active";
+    private static int activeInstances;
+
+    private GlassTrace() {
+    }
+
+    public static boolean isEnabled() {
+        return Trace.isEnabled();
+    }
+
+    /**
+     * Name that tells instances apart in a trace, e.g. {@code LiquidGlass[card]@1b2c3d}.
+     * The same view always gets the same name.
+     */
+    @NonNull
+    public static String nameOf(@NonNull String prefix, @NonNull View view) {
+        StringBuilder name = new StringBuilder(prefix);
+        int id = view.getId();
+        if (id != View.NO_ID) {
+            try {
+                name.append('[').append(view.getResources().getResourceEntryName(id)).append(']');
+            } catch (Resources.NotFoundException ignored) {
+            }
+        }
+        return name.append('@').append(Integer.toHexString(System.identityHashCode(view))).toString();
+    }
+
+    /**
+     * @return whether a section was started, to be passed on to {@link #end(boolean)}
+     */
+    public static boolean begin(@NonNull String section) {
+        if (!Trace.isEnabled()) return false;
+        Trace.beginSection(section);
+        return true;
+    }
+
+    public static void end(boolean begun) {
+        if (begun) Trace.endSection();
+    }
+
+    public static void beginAsync(@NonNull String section, int cookie) {
+        if (Trace.isEnabled()) Trace.beginAsyncSection(section, cookie);
+    }
+
+    public static void endAsync(@NonNull String section, int cookie) {
+        if (Trace.isEnabled()) Trace.endAsyncSection(section, cookie);
+    }
+
+    public static void setCounter(@NonNull String counter, long value) {
+        if (Trace.isEnabled()) Trace.setCounter(counter, (int) Math.min(Integer.MAX_VALUE, value));
+    }
+
+    public static void onInstanceCreated() {
+        setCounter(ACTIVE_COUNTER, ++activeInstances);
+    }
+
+    public static void onInstanceDisposed() {
+        setCounter(ACTIVE_COUNTER, --activeInstances);
+    }
+}
@@ -37,7 +37,10 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.qmdeve.liquidglass.LiquidGlass;
+import com.qmdeve.liquidglass.LiquidGlassMetrics;
 import com.qmdeve.liquidglass.Config;
+import com.qmdeve.liquidglass.QualityGovernor;
+import com.qmdeve.liquidglass.util.GlassTrace;
 import com.qmdeve.liquidglass.util.LiquidTracker;
 import com.qmdeve.liquidglass.util.Utils;
 
@@ -47,6 +50,30 @@ public class LiquidGlassView extends ViewGroup {
     private ViewGroup customSource;
     private final Context context;
     private float cornerRadius = Utils.dp2px(getResources(), 40), refractionHeight = Utils.dp2px(getResources(), 20), refractionOffset = -Utils.dp2px(getResources(), 70), tintAlpha = 0.0f, tintColorRed = 1.0f, tintColorGreen = 1.0f, tintColorBlue = 1.0f, blurRadius = 0.01f, dispersion = 0.5f, downX, downY, startTx, startTy;
+    private int captureScale = Config.CAPTURE_SCALE_AUTO;
+    private int dispersionQuality = Config.DISPERSION_QUALITY_AUTO;
+    private int backdropRefreshInterval = 1;
+    private float backdropRefreshRate = 0f;
+    /**
+     * Open {@link Editor}s, and which batch they belong to. A batch still open on the next
+     * frame is applied then, so a forgotten apply() cannot keep the view from updating.
+     */
+    private int editDepth = 0, editBatch = 0;
+    private final Runnable autoApply = () -> {
+        if (editDepth == 0) return;
+        editDepth = 0;
+        editBatch++;
+        updateConfig();
+    };
+    private boolean ensurePending = false;
+    @Nullable
+    private QualityGovernor qualityGovernor;
+    private int motionQualityTier = QualityGovernor.TIER_HIGH;
+    private boolean backdropFrozen = false;
+    private boolean metricsEnabled = false;
+    private boolean snapshotMode = false;
+    private int backend = LiquidGlass.BACKEND_AUTO;
+    private String traceDispatchDraw = "LiquidGlassView.dispatchDraw", traceTouch = "LiquidGlassView.onTouchEvent";
     private boolean draggableEnabled = false;
     private boolean elasticEnabled = false;
     private boolean touchEffectEnabled = false;
@@ -90,6 +117,15 @@ public class LiquidGlassView extends ViewGroup {
 
     @Override
     protected void dispatchDraw(@NonNull Canvas canvas) {
+        boolean traced = GlassTrace.begin(traceDispatchDraw);
+        try {
+            drawGlassAndGlow(canvas);
+        } finally {
+            GlassTrace.end(traced);
+        }
+    }
+
+    private void drawGlassAndGlow(Canvas canvas) {
         super.dispatchDraw(canvas);
         if (touchEffectEnabled && isTouching) {
             Path path = new Path();
@@ -244,6 +280,146 @@ public class LiquidGlassView extends ViewGroup {
         updateConfig();
     }
 
+    /**
+     * Set the backdrop capture scale
+     * The backdrop is captured and blurred at 1 / scale resolution
+     *
+     * @param scale int (1, 2, 4 or {@link Config#CAPTURE_SCALE_AUTO} to pick it from the blur radius)
+     */
+    public void setCaptureScale(int scale) {
+        this.captureScale = (scale == 1 || scale == 2 || scale == 4) ? scale : Config.CAPTURE_SCALE_AUTO;
+        updateConfig();
+    }
+
+    /**
+     * Set the dispersion quality
+     * Fewer taps are cheaper on low-end GPUs
+     *
+     * @param quality int ({@link Config#DISPERSION_QUALITY_AUTO}, {@link Config#DISPERSION_QUALITY_HIGH},
+     *                {@link Config#DISPERSION_QUALITY_MEDIUM} or {@link Config#DISPERSION_QUALITY_LOW})
+     */
+    public void setDispersionQuality(int quality) {
+        this.dispersionQuality = Math.max(Config.DISPERSION_QUALITY_AUTO, Math.min(Config.DISPERSION_QUALITY_LOW, quality));
+        updateConfig();
+    }
+
+    /**
+     * Re-record a changing backdrop at most once every N frames
+     * The glass itself is still drawn every frame from the last recording
+     *
+     * @param frames int (1 for every frame)
+     */
+    public void setBackdropRefreshInterval(int frames) {
+        this.backdropRefreshInterval = Math.max(1, frames);
+        updateConfig();
+    }
+
+    /**
+     * Re-record a changing backdrop at most this many times per second
+     * The glass itself is still drawn every frame from the last recording
+     *
+     * @param hz float (0 for no limit)
+     */
+    public void setBackdropRefreshRate(float hz) {
+        this.backdropRefreshRate = Math.max(0f, hz);
+        updateConfig();
+    }
+
+    /**
+     * Capture the backdrop once and reuse it until {@link #invalidateBackdrop()} is called
+     * Use it over static content such as a wallpaper or a loaded map tile
+     *
+     * @param enabled boolean
+     */
+    public void setSnapshotMode(boolean enabled) {
+        this.snapshotMode = enabled;
+        if (glass != null) glass.setSnapshotMode(enabled);
+    }
+
+    /**
+     * Choose how the glass is rendered, see {@link LiquidGlass#setBackend(int)}
+     *
+     * @param backend int ({@link LiquidGlass#BACKEND_AUTO} for the best one the device supports)
+     */
+    public void setBackend(int backend) {
+        this.backend = backend;
+        if (glass != null) glass.setBackend(backend);
+    }
+
+    /**
+     * Capture the snapshot backdrop again on the next frame
+     */
+    public void invalidateBackdrop() {
+        if (glass != null) glass.invalidateBackdrop();
+    }
+
+    /**
+     * Re-record the backdrop on the next frame, ignoring the refresh cap and freeze
+     */
+    public void refreshBackdrop() {
+        if (glass != null) glass.refreshBackdrop();
+    }
+
+    /**
+     * Re-record the backdrop at full rate for a while, ignoring the refresh cap and freeze
+     *
+     * @param durationMs long
+     */
+    public void refreshBackdrop(long durationMs) {
+        if (glass != null) glass.refreshBackdrop(durationMs);
+    }
+
+    /**
+     * Let a governor lower the glass quality while frames run over budget
+     *
+     * @param governor QualityGovernor, or null to always render at the configured quality
+     */
+    public void setQualityGovernor(@Nullable QualityGovernor governor) {
+        this.qualityGovernor = governor;
+        if (glass != null) glass.setQualityGovernor(governor);
+    }
+
+    /**
+     * Set the quality used while the view is dragged or the content underneath scrolls
+     * Full quality comes back on the first idle frame
+     *
+     * @param tier int ({@link QualityGovernor#TIER_HIGH} keeps full quality in motion)
+     */
+    public void setMotionQualityTier(int tier) {
+        this.motionQualityTier = tier;
+        if (glass != null) glass.setMotionQualityTier(tier);
+    }
+
+    /**
+     * Freeze the backdrop, e.g. during activity or fragment transitions
+     *
+     * @param frozen boolean
+     */
+    public void setBackdropFrozen(boolean frozen) {
+        this.backdropFrozen = frozen;
+        if (glass != null) glass.setBackdropFrozen(frozen);
+    }
+
+    /**
+     * Set whether performance counters are collected, see {@link #getMetrics()}
+     *
+     * @param enabled boolean
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        this.metricsEnabled = enabled;
+        if (glass != null) glass.setMetricsEnabled(enabled);
+    }
+
+    /**
+     * Get the performance counters of the glass
+     *
+     * @return LiquidGlassMetrics, or null while metrics are disabled or the glass is not created yet
+     */
+    @Nullable
+    public LiquidGlassMetrics getMetrics() {
+        return glass != null ? glass.getMetrics() : null;
+    }
+
     /**
      * Set whether the View is draggable or not
      *
@@ -275,9 +451,105 @@ public class LiquidGlassView extends ViewGroup {
         this.touchEffectEnabled = enabled;
     }
 
+    /**
+     * Start a batch of parameter changes that is applied at once by {@link Editor#apply()}
+     * Batches can be nested, the changes are applied when the outermost one is, or on the
+     * next frame at the latest
+     *
+     * @return Editor
+     */
+    public Editor edit() {
+        if (editDepth++ == 0) postOnAnimation(autoApply);
+        return new Editor(editBatch);
+    }
+
+    /**
+     * Batched parameter changes, see {@link #edit()}
+     * Values are clamped the same way as the matching setters
+     */
+    public final class Editor {
+        private final int batch;
+        private boolean applied;
+
+        private Editor(int batch) {
+            this.batch = batch;
+        }
+
+        public Editor cornerRadius(float px) {
+            setCornerRadius(px);
+            return this;
+        }
+
+        public Editor refractionHeight(float px) {
+            setRefractionHeight(px);
+            return this;
+        }
+
+        public Editor refractionOffset(float px) {
+            setRefractionOffset(px);
+            return this;
+        }
+
+        public Editor tintColor(float red, float green, float blue) {
+            setTintColorRed(red);
+            setTintColorGreen(green);
+            setTintColorBlue(blue);
+            return this;
+        }
+
+        public Editor tintAlpha(float alpha) {
+            setTintAlpha(alpha);
+            return this;
+        }
+
+        public Editor dispersion(float dispersion) {
+            setDispersion(dispersion);
+            return this;
+        }
+
+        public Editor blurRadius(float radius) {
+            setBlurRadius(radius);
+            return this;
+        }
+
+        public Editor captureScale(int scale) {
+            setCaptureScale(scale);
+            return this;
+        }
+
+        public Editor dispersionQuality(int quality) {
+            setDispersionQuality(quality);
+            return this;
+        }
+
+        public Editor backdropRefreshInterval(int frames) {
+            setBackdropRefreshInterval(frames);
+            return this;
+        }
+
+        public Editor backdropRefreshRate(float hz) {
+            setBackdropRefreshRate(hz);
+            return this;
+        }
+
+        /**
+         * Apply all changes with a single update on the next frame
+         */
+        public void apply() {
+            // Already applied, or its batch was applied on the next frame without it
+            if (applied || batch != editBatch) return;
+            applied = true;
+            if (--editDepth > 0) return;
+            removeCallbacks(autoApply);
+            editBatch++;
+            updateConfig();
+        }
+    }
+
     private void updateConfig() {
+        if (editDepth > 0) return;
         if (glass == null) {
-            rebuild();
+            scheduleEnsureGlass();
             return;
         }
 
@@ -286,25 +558,29 @@ public class LiquidGlassView extends ViewGroup {
         if (w <= 0) w = Utils.getDeviceWidthPx(context);
         if (h <= 0) h = getResources().getDisplayMetrics().heightPixels;
 
-        config.CORNER_RADIUS_PX = cornerRadius;
-        config.REFRACTION_HEIGHT = refractionHeight;
-        config.REFRACTION_OFFSET = refractionOffset;
-        config.BLUR_RADIUS = blurRadius;
-        config.WIDTH = w;
-        config.HEIGHT = h;
-        config.DISPERSION = dispersion;
-        config.TINT_ALPHA = tintAlpha;
-        config.TINT_COLOR_BLUE = tintColorBlue;
-        config.TINT_COLOR_GREEN = tintColorGreen;
-        config.TINT_COLOR_RED = tintColorRed;
-
-        glass.post(() -> glass.updateParameters());
+        config.setCornerRadius(cornerRadius);
+        config.setRefractionHeight(refractionHeight);
+        config.setRefractionOffset(refractionOffset);
+        config.setBlurRadius(blurRadius);
+        config.setCaptureScale(captureScale);
+        config.setDispersionQuality(dispersionQuality);
+        config.setBackdropRefreshInterval(backdropRefreshInterval);
+        config.setBackdropRefreshRate(backdropRefreshRate);
+        config.setSize(w, h);
+        config.setDispersion(dispersion);
+        config.setTint(tintColorRed, tintColorGreen, tintColorBlue, tintAlpha);
+
+        // Everything above went through the setters, which mark their own fields
+        glass.updateParameters(0);
     }
 
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
-        post(this::ensureGlass);
+        String traceName = GlassTrace.nameOf("LiquidGlass", this);
+        traceDispatchDraw = traceName + ".dispatchDraw";
+        traceTouch = traceName + ".onTouchEvent";
+        scheduleEnsureGlass();
     }
 
     @Override
@@ -322,18 +598,21 @@ public class LiquidGlassView extends ViewGroup {
                 if (cornerRadius > maxPx) {
                     cornerRadius = maxPx;
                 }
-                rebuild();
+                // Resized in place, the glass child picks up its new size when it is laid out
+                updateConfig();
             }
         }
     }
 
-    private void rebuild() {
-        removeGlass();
+    private void scheduleEnsureGlass() {
+        if (ensurePending) return;
+        ensurePending = true;
         post(this::ensureGlass);
     }
 
     private void ensureGlass() {
-        if (glass != null) return;
+        ensurePending = false;
+        if (glass != null || !isAttachedToWindow()) return;
 
         int w = getWidth();
         int h = getHeight();
@@ -355,10 +634,22 @@ public class LiquidGlassView extends ViewGroup {
                 .tintColorGreen(tintColorGreen)
                 .tintColorBlue(tintColorBlue)
                 .dispersion(dispersion)
+                .captureScale(captureScale)
+                .dispersionQuality(dispersionQuality)
+                .backdropRefreshInterval(backdropRefreshInterval)
+                .backdropRefreshRate(backdropRefreshRate)
                 .size(w, h)
         );
 
         glass = new LiquidGlass(getContext(), config);
+        // Its glow and children are drawn around the glass, so they are left out of the backdrop too
+        glass.setGlassView(this);
+        glass.setQualityGovernor(qualityGovernor);
+        glass.setMotionQualityTier(motionQualityTier);
+        glass.setBackdropFrozen(backdropFrozen);
+        glass.setMetricsEnabled(metricsEnabled);
+        glass.setSnapshotMode(snapshotMode);
+        glass.setBackend(backend);
 
         LayoutParams lp = new LayoutParams(
                 LayoutParams.MATCH_PARENT,
@@ -383,6 +674,15 @@ public class LiquidGlassView extends ViewGroup {
     @SuppressLint("ClickableViewAccessibility")
     @Override
     public boolean onTouchEvent(android.view.MotionEvent e) {
+        boolean traced = GlassTrace.begin(traceTouch);
+        try {
+            return handleTouchEvent(e);
+        } finally {
+            GlassTrace.end(traced);
+        }
+    }
+
+    private boolean handleTouchEvent(android.view.MotionEvent e) {
         if (!draggableEnabled && !touchEffectEnabled) return super.onTouchEvent(e);
         if (elasticEnabled) liquidTracker.applyMovement(e);
 
@@ -0,0 +1,205 @@
+/**
+ * Copyright 2025 QmDeve
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * @author QmDeve
+ * @github https://github.com/QmDeve
+ * @since 2025-11-01
+ */
+
+
+package com.qmdeve.liquidglass.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+/**
+ * Reference values are worked out from liquidglass_effect.agsl by hand
+ */
+public class RefractionKernelTest {
+
+    private static final float EPSILON = 1e-4f;
+
+    @Test
+    public void sdRoundedRect() {
+        // 100 x 60 with radius 10: centre, edge, and outside a corner
+        assertEquals(-30f, RefractionKernel.sdRoundedRect(0f, 0f, 50f, 30f, 10f), EPSILON);
+        assertEquals(0f, RefractionKernel.sdRoundedRect(50f, 0f, 50f, 30f, 10f), EPSILON);
+        assertEquals((float) Math.sqrt(200) - 10f, RefractionKernel.sdRoundedRect(50f, 30f, 50f, 30f, 10f), EPSILON);
+        assertEquals(-5f, RefractionKernel.sdRoundedRect(-45f, 0f, 50f, 30f, 10f), EPSILON);
+    }
+
+    @Test
+    public void gradSdRoundedRect() {
+        float[] grad = new float[2];
+        RefractionKernel.gradSdRoundedRect(45f, 0f, 50f, 30f, 10f, grad);
+        assertArrayEquals(new float[]{1f, 0f}, grad, EPSILON);
+
+        RefractionKernel.gradSdRoundedRect(10f, -5f, 50f, 30f, 10f, grad);
+        assertArrayEquals(new float[]{0f, -1f}, grad, EPSILON);
+
+        float diagonal = (float) Math.sqrt(0.5);
+        RefractionKernel.gradSdRoundedRect(-45f, 25f, 50f, 30f, 10f, grad);
+        assertArrayEquals(new float[]{-diagonal, diagonal}, grad, EPSILON);
+    }
+
+    @Test
+    public void circleMap() {
+        assertEquals(0f, RefractionKernel.circleMap(0f), EPSILON);
+        assertEquals(0.2f, RefractionKernel.circleMap(0.6f), EPSILON);
+        assertEquals(1f, RefractionKernel.circleMap(1f), EPSILON);
+    }
+
+    @Test
+    public void boxBlurRadii() {
+        assertNull(RefractionKernel.boxBlurRadii(0.2f));
+        assertArrayEquals(new int[]{3, 3, 4}, RefractionKernel.boxBlurRadii(4f));
+
+        // Three boxes together have about the variance of the gaussian
+        for (float sigma = 2f; sigma <= 32f; sigma *= 2f) {
+            float variance = 0f;
+            for (int radius : RefractionKernel.boxBlurRadii(sigma)) {
+                int width = radius * 2 + 1;
+                variance += (width * width - 1) / 12f;
+            }
+            assertEquals(sigma * sigma, variance, sigma * sigma * 0.2f);
+        }
+    }
+
+    @Test
+    public void boxBlurKeepsFlatColour() {
+        int w = 16, h = 12;
+        int[] src = new int[w * h], tmp = new int[w * h];
+        Arrays.fill(src, 0xff336699);
+        RefractionKernel.boxBlurRows(src, tmp, w, h, 3, 0, h);
+        RefractionKernel.boxBlurColumns(tmp, src, w, h, 3, 0, w);
+        for (int c : src) assertEquals(0xff336699, c);
+    }
+
+    @Test
+    public void premultiply() {
+        int[] pixels = {0x80ff8000, 0x00ffffff, 0xff102030};
+        RefractionKernel.premultiply(pixels, 0, pixels.length);
+        assertArrayEquals(new int[]{0x80804000, 0, 0xff102030}, pixels);
+    }
+
+    @Test
+    public void interiorIsNotDisplaced() {
+        RefractionKernel kernel = gradientKernel();
+        int[] dst = new int[kernel.width * kernel.height];
+        kernel.run(gradientSource(), dst, 0, kernel.height);
+        // Pixel (20, 20) samples the source at 20.5 + 20 = 40.5, the centre of source pixel 40
+        assertEquals(80, red(dst[20 * kernel.width + 20]));
+    }
+
+    @Test
+    public void bandIsDisplacedLikeTheShader() {
+        RefractionKernel kernel = gradientKernel();
+        int[] dst = new int[kernel.width * kernel.height];
+        kernel.run(gradientSource(), dst, 0, kernel.height);
+
+        // Pixel (39, 20): centered (19.5, 0.5), sd = -0.5, d = circleMap(0.95) * -8,
+        // grad = normalize(19.5, 0.5), so x is refracted to 39.5 + d * grad.x
+        float d = (1f - (float) Math.sqrt(1f - 0.95f * 0.95f)) * -8f;
+        float gradX = 19.5f / (float) Math.sqrt(19.5f * 19.5f + 0.5f * 0.5f);
+        float sourceX = 39.5f + d * gradX + 20f;
+        int expected = Math.round(2f * (sourceX - 0.5f));
+        assertEquals(expected, red(dst[20 * kernel.width + 39]));
+    }
+
+    @Test
+    public void autoDispersionIsResolvedPerGlass() {
+        // The widest fringe is 8 * 1 px, so the whole glass uses 7 taps, even where it is thin
+        RefractionKernel auto = gradientKernel();
+        auto.dispersion = 1f;
+        int[] expected = new int[auto.width * auto.height];
+        int[] actual = new int[auto.width * auto.height];
+        auto.run(gradientSource(), actual, 0, auto.height);
+
+        RefractionKernel high = gradientKernel();
+        high.dispersion = 1f;
+        high.dispersionQuality = RefractionKernel.QUALITY_HIGH;
+        high.run(gradientSource(), expected, 0, high.height);
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void filtersMatchTheShader() {
+        RefractionKernel kernel = new RefractionKernel();
+        kernel.width = kernel.height = kernel.srcWidth = kernel.srcHeight = 4;
+        kernel.glassWidth = kernel.glassHeight = 4f;
+        kernel.refractionHeight = 0f;
+        kernel.whitePoint = 0.2f;
+        kernel.contrast = 0.5f;
+        kernel.tintRed = 1f;
+        kernel.tintAlpha = 0.5f;
+        int[] src = new int[16];
+        Arrays.fill(src, 0xff404040);
+        int[] dst = new int[16];
+        kernel.run(src, dst, 0, 4);
+
+        // mix(c, 1, 0.2), then (c - 0.5) * 1.5 + 0.5, then mix(c, tint, 0.5)
+        float c = 0x40 / 255f;
+        c = c + (1f - c) * 0.2f;
+        c = (c - 0.5f) * 1.5f + 0.5f;
+        int red = Math.round((c + (1f - c) * 0.5f) * 255f);
+        int other = Math.round(c * 0.5f * 255f);
+        assertEquals(0xff000000 | red << 16 | other << 8 | other, dst[5]);
+    }
+
+    @Test
+    public void transparentSourceStaysTransparent() {
+        RefractionKernel kernel = gradientKernel();
+        int[] src = new int[kernel.srcWidth * kernel.srcHeight];
+        int[] dst = new int[kernel.width * kernel.height];
+        kernel.run(src, dst, 0, kernel.height);
+        for (int c : dst) assertEquals(0, c);
+    }
+
+    /**
+     * 40 x 40 glass, square corners, no depth, over an 80 x 80 source
+     */
+    private static RefractionKernel gradientKernel() {
+        RefractionKernel kernel = new RefractionKernel();
+        kernel.width = kernel.height = 40;
+        kernel.glassWidth = kernel.glassHeight = 40f;
+        kernel.srcWidth = kernel.srcHeight = 80;
+        kernel.srcOffsetX = kernel.srcOffsetY = 20f;
+        kernel.cornerRadius = 0f;
+        kernel.refractionHeight = 10f;
+        kernel.refractionAmount = -8f;
+        kernel.depthEffect = 0f;
+        return kernel;
+    }
+
+    /**
+     * Opaque, red is twice the x of the pixel
+     */
+    private static int[] gradientSource() {
+        int[] src = new int[80 * 80];
+        for (int y = 0; y < 80; y++) {
+            for (int x = 0; x < 80; x++) src[y * 80 + x] = 0xff000000 | (2 * x) << 16;
+        }
+        return src;
+    }
+
+    private static int red(int color) {
+        return (color >> 16) & 0xff;
+    }
+}